@@ -0,0 +1,70 @@
+package model.management;
+
+import model.GuineaPig;
+
+/**
+ * Seeded worlds used by benchmarks, with the same density whatever the number of animals
+ */
+final class BenchmarkWorlds {
+	static final long SEED = 42;
+
+	/**
+	 * Map area per animal, in square pixels
+	 */
+	static final int AREA_PER_ANIMAL = 150 * 150;
+
+	/**
+	 * Number of animals a batch of worlds holds at least, see {@link #createBatch(int, boolean, boolean)}
+	 */
+	static final int BATCH_ANIMALS = 100_000;
+
+	private static final TickPhase PHASES[] = TickPhase.values();
+
+	private BenchmarkWorlds() {
+	}
+
+	/**
+	 * @param nbAnimals number of animals in the world, a fifth of them being {@link model.Predator} if predators are asked for
+	 */
+	static Simulator create(int nbAnimals, boolean rivers, boolean predators) {
+		return new Simulator(GuineaPig.class, predators, configuration(nbAnimals, rivers, predators, SEED));
+	}
+
+	/**
+	 * Worlds of nbAnimals animals, enough of them to hold {@link #BATCH_ANIMALS} animals (a single one if it's already bigger), each with its own seed.
+	 * Running a phase on every world of a batch takes about as long whatever the size of the worlds, if the phase scales linearly :
+	 * even the phases of small worlds are then long enough to be timed.
+	 */
+	static Simulator[] createBatch(int nbAnimals, boolean rivers, boolean predators) {
+		Simulator worlds[] = new Simulator[batchSize(nbAnimals)];
+		for (int w = 0 ; w < worlds.length ; w++) {
+			worlds[w] = new Simulator(GuineaPig.class, predators, configuration(nbAnimals, rivers, predators, SEED + w));
+		}
+		return worlds;
+	}
+
+	static int batchSize(int nbAnimals) {
+		return Math.max(1, (BATCH_ANIMALS + nbAnimals - 1) / nbAnimals);
+	}
+
+	static WorldConfiguration configuration(int nbAnimals, boolean rivers, boolean predators, long seed) {
+		int side = (int) Math.sqrt((double) nbAnimals * AREA_PER_ANIMAL);
+		WorldConfiguration config = new WorldConfiguration(side, side);
+		int nbPredators = predators ? nbAnimals / 5 : 0;
+		config.setStartingAnimals(nbAnimals - nbPredators);
+		config.setStartingPredators(nbPredators);
+		config.setStartingVegetation(nbAnimals / 2);
+		config.setRivers(rivers);
+		config.setSeed(seed);
+		return config;
+	}
+
+	/**
+	 * Runs the phases of the first tick of a new world that come before the given one
+	 */
+	static void runPhasesBefore(Simulator simulator, TickPhase phase) {
+		for (int i = 0 ; PHASES[i] != phase ; i++) {
+			simulator.runPhase(PHASES[i]);
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package model.management;
+
+import java.util.Iterator;
+
+/**
+ * Compares the detection phase of {@link Simulator}, as run by {@link Simulator#nextTick()}, with animals found through the grid
+ * and with a single cell as big as the map, which makes every animal look at every other one as before the grid.
+ * Both worlds are created from the same seed and detect the same animals, so they stay identical : this is checked after every tick.
+ * The map grows with the population so that density stays the same, like it would on a bigger world :
+ * the grid should then scale almost linearly while brute force is quadratic.
+ * Run with the compiled src/ on the classpath, ex : java -cp bin:bench-bin model.management.DetectionScaling
+ */
+public class DetectionScaling {
+	private static final TickPhase PHASES[] = TickPhase.values();
+
+	private static final int WARMUP_TICKS = 1;
+	/**
+	 * Ticks measured per world, fewer once brute force took that long
+	 */
+	private static final int TICKS = 5;
+	private static final long BRUTE_FORCE_NANOS = 20_000_000_000L;
+
+	public static void main(String[] args) {
+		int populations[] = {1_000, 10_000, 100_000};
+		System.out.println("animals\tgrid ns/animal\tbrute force ns/animal\tticks");
+		run(populations[0], false);
+		for (int nbAnimals : populations) {
+			run(nbAnimals, true);
+		}
+	}
+
+	private static void run(int nbAnimals, boolean print) {
+		Simulator grid = BenchmarkWorlds.create(nbAnimals, true, true);
+		Simulator bruteForce = BenchmarkWorlds.create(nbAnimals, true, true);
+		bruteForce.setAnimalGridCellSize(Math.max(bruteForce.MAP_WIDTH, bruteForce.MAP_HEIGHT));
+
+		long gridNanos = 0;
+		long bruteForceNanos = 0;
+		int ticks = 0;
+		for (int tick = 0 ; tick < WARMUP_TICKS + TICKS && (ticks == 0 || bruteForceNanos < BRUTE_FORCE_NANOS) ; tick++) {
+			long gridTime = detectionNanos(grid);
+			long bruteForceTime = detectionNanos(bruteForce);
+			for (int i = 1 ; i < PHASES.length ; i++) {
+				grid.runPhase(PHASES[i]);
+				bruteForce.runPhase(PHASES[i]);
+			}
+			checkSameAnimals(grid, bruteForce);
+			if (tick >= WARMUP_TICKS) {
+				gridNanos += gridTime;
+				bruteForceNanos += bruteForceTime;
+				ticks++;
+			}
+		}
+
+		if (print) {
+			System.out.println(nbAnimals + "\t" + String.format("%.1f", (double) gridNanos / ticks / nbAnimals)
+					+ "\t" + String.format("%.1f", (double) bruteForceNanos / ticks / nbAnimals) + "\t" + ticks);
+		}
+	}
+
+	private static long detectionNanos(Simulator simulator) {
+		long start = System.nanoTime();
+		simulator.runPhase(TickPhase.DETECTION);
+		return System.nanoTime() - start;
+	}
+
+	private static void checkSameAnimals(Simulator a, Simulator b) {
+		if (a.getAllAnimals().size() != b.getAllAnimals().size()) {
+			throw new IllegalStateException("Worlds differ : " + a.getAllAnimals().size() + " animals instead of " + b.getAllAnimals().size());
+		}
+		Iterator<Animal> it = b.getAllAnimals().iterator();
+		for (Animal animal : a.getAllAnimals()) {
+			Animal other = it.next();
+			if (animal.getPosX() != other.getPosX() || animal.getPosY() != other.getPosY()) {
+				throw new IllegalStateException("Worlds differ : animals moved differently");
+			}
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package model.management;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time taken by a whole {@link Simulator#nextTick()}.
+ * Every invocation runs the first {@link #TICKS} ticks of a new world created from the same seed, so that invocations measure the same populations.
+ * Scores are per tick.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NextTickBenchmark {
+	static final int TICKS = 10;
+
+	@Param({"100", "1000", "10000", "100000"})
+	private int animals;
+
+	@Param({"true", "false"})
+	private boolean rivers;
+
+	@Param({"true", "false"})
+	private boolean predators;
+
+	private Simulator simulator;
+
+	@Setup(Level.Invocation)
+	public void createWorld() {
+		simulator = BenchmarkWorlds.create(animals, rivers, predators);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TICKS)
+	public Simulator nextTicks() {
+		for (int i = 0 ; i < TICKS ; i++) {
+			simulator.nextTick();
+		}
+		return simulator;
+	}
+}
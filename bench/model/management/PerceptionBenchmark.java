@@ -0,0 +1,82 @@
+package model.management;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.GuineaPig;
+
+/**
+ * Detection phase with and without pooled perception (see {@link WorldConfiguration#isPooledPerception()}), once worlds have run a few ticks :
+ * the arenas, grids and snapshots allocated by the first ticks are then already there, as they are during a long run.
+ * Each invocation runs it on a batch of worlds holding {@link BenchmarkWorlds#BATCH_ANIMALS} animals, which are created again for every iteration.
+ * Meant to be run with the GC profiler, whose gc.alloc.rate.norm shows the bytes allocated per batch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PerceptionBenchmark {
+	private static final TickPhase PHASES[] = TickPhase.values();
+
+	/**
+	 * Ticks run by each world before being measured
+	 */
+	static final int WARMUP_TICKS = 5;
+
+	@Param({"1000", "10000"})
+	private int animals;
+
+	@Param({"true", "false"})
+	private boolean pooled;
+
+	private Simulator worlds[];
+
+	@Setup(Level.Iteration)
+	public void createWorlds() {
+		worlds = new Simulator[BenchmarkWorlds.batchSize(animals)];
+		for (int w = 0 ; w < worlds.length ; w++) {
+			WorldConfiguration config = BenchmarkWorlds.configuration(animals, true, true, BenchmarkWorlds.SEED + w);
+			config.setPooledPerception(pooled);
+			worlds[w] = new Simulator(GuineaPig.class, true, config);
+			for (int t = 0 ; t < WARMUP_TICKS ; t++) {
+				worlds[w].nextTick();
+			}
+			// The rest of this tick is run before the first invocation
+			worlds[w].runPhase(TickPhase.DETECTION);
+		}
+	}
+
+	/**
+	 * Runs the rest of the previous tick, so that each detection phase starts a new tick
+	 */
+	@Setup(Level.Invocation)
+	public void finishTick() {
+		for (Simulator simulator : worlds) {
+			for (int i = 1 ; i < PHASES.length ; i++) {
+				simulator.runPhase(PHASES[i]);
+			}
+		}
+	}
+
+	@Benchmark
+	public Simulator[] detection() {
+		for (Simulator simulator : worlds) {
+			simulator.runPhase(TickPhase.DETECTION);
+		}
+		return worlds;
+	}
+}
@@ -0,0 +1,60 @@
+package model.management;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time taken by each step of {@link Simulator#nextTick()}, in the first tick of new worlds.
+ * Before every invocation, a new batch of worlds is created (see {@link BenchmarkWorlds#createBatch(int, boolean, boolean)})
+ * and brought to the measured phase by running the phases before it, so that every invocation measures the same work.
+ * A score is thus the time the phase takes for {@link BenchmarkWorlds#BATCH_ANIMALS} animals, split in worlds of the given size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TickPhaseBenchmark {
+	@Param({"100", "1000", "10000", "100000"})
+	private int animals;
+
+	@Param({"true", "false"})
+	private boolean rivers;
+
+	@Param({"true", "false"})
+	private boolean predators;
+
+	@Param({"DETECTION", "BEHAVE", "MOVE", "ATTACK", "EAT", "MATE", "AGING", "GRASS_GROWTH", "WORLD_UPDATE"})
+	private TickPhase phase;
+
+	private Simulator worlds[];
+
+	@Setup(Level.Invocation)
+	public void createWorlds() {
+		worlds = BenchmarkWorlds.createBatch(animals, rivers, predators);
+		for (Simulator simulator : worlds) {
+			BenchmarkWorlds.runPhasesBefore(simulator, phase);
+		}
+	}
+
+	@Benchmark
+	public Simulator[] runPhase() {
+		for (Simulator simulator : worlds) {
+			simulator.runPhase(phase);
+		}
+		return worlds;
+	}
+}
@@ -0,0 +1,129 @@
+package gui;
+
+import javafx.scene.canvas.GraphicsContext;
+
+/**
+ * Which part of the map is shown on the canvas, and how big : the point of the map at the top left corner of the canvas, and the zoom.
+ * Moved by dragging the canvas, zoomed with the mouse wheel. Only used from the JavaFX thread.
+ */
+final class Camera {
+	static final double MIN_ZOOM = 0.05;
+	static final double MAX_ZOOM = 8;
+
+	/**
+	 * Below that zoom, texts aren't drawn anymore
+	 */
+	static final double LABELS_MIN_ZOOM = 0.6;
+
+	/**
+	 * Below that zoom, detection distances aren't drawn anymore
+	 */
+	static final double DETECTION_MIN_ZOOM = 0.3;
+
+	private final int mapWidth;
+	private final int mapHeight;
+	private final double viewWidth;
+	private final double viewHeight;
+
+	private double zoom;
+	private double left;
+	private double top;
+
+	/**
+	 * Starts zoomed so that the whole map fits in the view
+	 */
+	Camera(int mapWidth, int mapHeight, double viewWidth, double viewHeight) {
+		this.mapWidth = mapWidth;
+		this.mapHeight = mapHeight;
+		this.viewWidth = viewWidth;
+		this.viewHeight = viewHeight;
+		this.zoom = Math.max(MIN_ZOOM, Math.min(1, Math.min(viewWidth / mapWidth, viewHeight / mapHeight)));
+		this.left = 0;
+		this.top = 0;
+		clamp();
+	}
+
+	/**
+	 * Moves the map along with the mouse, given how many pixels of the canvas it moved
+	 */
+	void pan(double dx, double dy) {
+		left -= dx / zoom;
+		top -= dy / zoom;
+		clamp();
+	}
+
+	/**
+	 * Zooms by given factor, keeping the point of the map under (screenX,screenY) where it is on the canvas
+	 */
+	void zoomAt(double screenX, double screenY, double factor) {
+		double worldX = toWorldX(screenX);
+		double worldY = toWorldY(screenY);
+		zoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom * factor));
+		left = worldX - screenX / zoom;
+		top = worldY - screenY / zoom;
+		clamp();
+	}
+
+	/**
+	 * Keeps the map on the view, centering it on an axis where it's smaller than the view
+	 */
+	private void clamp() {
+		double visibleWidth = viewWidth / zoom;
+		double visibleHeight = viewHeight / zoom;
+		if (visibleWidth >= mapWidth) {
+			left = (mapWidth - visibleWidth) / 2;
+		} else {
+			left = Math.max(0, Math.min(mapWidth - visibleWidth, left));
+		}
+		if (visibleHeight >= mapHeight) {
+			top = (mapHeight - visibleHeight) / 2;
+		} else {
+			top = Math.max(0, Math.min(mapHeight - visibleHeight, top));
+		}
+	}
+
+	/**
+	 * Makes g draw in map coordinates. To be undone with g.restore().
+	 */
+	void apply(GraphicsContext g) {
+		g.save();
+		g.scale(zoom, zoom);
+		g.translate(-left, -top);
+	}
+
+	double toWorldX(double screenX) {
+		return left + screenX / zoom;
+	}
+
+	double toWorldY(double screenY) {
+		return top + screenY / zoom;
+	}
+
+	double getZoom() {
+		return zoom;
+	}
+
+	double getLeft() {
+		return left;
+	}
+
+	double getTop() {
+		return top;
+	}
+
+	double getRight() {
+		return left + viewWidth / zoom;
+	}
+
+	double getBottom() {
+		return top + viewHeight / zoom;
+	}
+
+	/**
+	 * @return true if the square of given radius around (x,y) is at least partly in the view
+	 */
+	boolean isVisible(double x, double y, double radius) {
+		return x + radius >= left && x - radius <= getRight()
+				&& y + radius >= top && y - radius <= getBottom();
+	}
+}
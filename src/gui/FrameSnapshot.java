@@ -0,0 +1,118 @@
+package gui;
+
+import java.util.Arrays;
+
+import model.Predator;
+import model.management.Animal;
+import model.management.Grass;
+import model.management.Simulator;
+import model.management.SpatialGrid;
+
+/**
+ * What is drawn of a world at a given tick, copied from the simulator so that it can be drawn while the next ticks run.
+ * Filled by the simulation thread, then left untouched while the UI draws it, see {@link SimulationThread}.
+ */
+final class FrameSnapshot {
+	private static final int GRID_CELL_SIZE = 128;
+
+	int tick;
+
+	int nbAnimals;
+	int animalX[] = new int[0];
+	int animalY[] = new int[0];
+	boolean dead[] = new boolean[0];
+	boolean predator[] = new boolean[0];
+	Class<?> species[] = new Class<?>[0];
+	/**
+	 * Image to draw for each animal, depending on whether it's dead
+	 */
+	String tilePath[] = new String[0];
+	int fullness[] = new int[0];
+	int generation[] = new int[0];
+	int detectionDistance[] = new int[0];
+
+	int nbGrass;
+	int grassX[] = new int[0];
+	int grassY[] = new int[0];
+	int grassAmount[] = new int[0];
+	int grassWidth[] = new int[0];
+
+	/**
+	 * Animals and grass by position, so that only those in view are drawn
+	 */
+	SpatialGrid animalGrid;
+	SpatialGrid grassGrid;
+
+	/**
+	 * Largest detection distance of a living animal, and largest grass, to know how far outside the view they can still be seen
+	 */
+	int maxDetectionDistance;
+	int maxGrassWidth;
+
+	/**
+	 * Only called from the simulation thread, between two ticks
+	 */
+	void fill(Simulator simulator) {
+		tick = simulator.getTicksElapsed();
+
+		nbAnimals = simulator.getAllAnimals().size();
+		if (animalX.length < nbAnimals) {
+			int capacity = Math.max(nbAnimals, animalX.length * 2);
+			animalX = Arrays.copyOf(animalX, capacity);
+			animalY = Arrays.copyOf(animalY, capacity);
+			dead = Arrays.copyOf(dead, capacity);
+			predator = Arrays.copyOf(predator, capacity);
+			species = Arrays.copyOf(species, capacity);
+			tilePath = Arrays.copyOf(tilePath, capacity);
+			fullness = Arrays.copyOf(fullness, capacity);
+			generation = Arrays.copyOf(generation, capacity);
+			detectionDistance = Arrays.copyOf(detectionDistance, capacity);
+		}
+		maxDetectionDistance = 0;
+		int i = 0;
+		for (Animal a : simulator.getAllAnimals()) {
+			animalX[i] = a.getPosX();
+			animalY[i] = a.getPosY();
+			dead[i] = a.isDead();
+			predator[i] = a instanceof Predator;
+			species[i] = a.getClass();
+			tilePath[i] = dead[i] ? a.getDeadTilePath() : a.getTilePath();
+			fullness[i] = a.getFullness();
+			generation[i] = a.getGeneration();
+			detectionDistance[i] = a.getDetectionDistanceValue();
+			if (!dead[i]) {
+				maxDetectionDistance = Math.max(maxDetectionDistance, detectionDistance[i]);
+			}
+			i++;
+		}
+		// Forget images and classes of animals that aren't there anymore
+		Arrays.fill(tilePath, nbAnimals, tilePath.length, null);
+		Arrays.fill(species, nbAnimals, species.length, null);
+
+		nbGrass = simulator.getAllFoodSources().size();
+		if (grassX.length < nbGrass) {
+			int capacity = Math.max(nbGrass, grassX.length * 2);
+			grassX = Arrays.copyOf(grassX, capacity);
+			grassY = Arrays.copyOf(grassY, capacity);
+			grassAmount = Arrays.copyOf(grassAmount, capacity);
+			grassWidth = Arrays.copyOf(grassWidth, capacity);
+		}
+		maxGrassWidth = 0;
+		i = 0;
+		for (Grass g : simulator.getAllFoodSources()) {
+			grassX[i] = g.getPosX();
+			grassY[i] = g.getPosY();
+			grassAmount[i] = g.getAmount();
+			grassWidth[i] = g.getWidth();
+			maxGrassWidth = Math.max(maxGrassWidth, grassWidth[i]);
+			i++;
+		}
+
+		if (animalGrid == null) {
+			animalGrid = new SpatialGrid(simulator.MAP_WIDTH, simulator.MAP_HEIGHT, GRID_CELL_SIZE);
+			grassGrid = new SpatialGrid(simulator.MAP_WIDTH, simulator.MAP_HEIGHT, GRID_CELL_SIZE);
+		}
+		animalGrid.rebuild(animalX, animalY, nbAnimals);
+		grassGrid.rebuild(grassX, grassY, nbGrass);
+	}
+}
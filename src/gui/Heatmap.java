@@ -0,0 +1,194 @@
+package gui;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import model.Predator;
+
+/**
+ * Density of animals and grass in view, drawn instead of each animal when there are too many of them to be told apart.
+ * The view is cut in cells of {@link #CELL_PIXELS} pixels, where animals (by species, dead ones apart) and grass amounts are counted.
+ * Each cell becomes a pixel of an image, stretched over the view : its colour mixes the colours of the species in it,
+ * and is brighter the more animals there are (on a logarithmic scale, relatively to the most crowded cell), over the green of the grass.
+ * Drawing thus only costs a pass over the animals and one over the pixels, whatever the population.
+ * Only used from the JavaFX thread.
+ */
+final class Heatmap {
+	static final int CELL_PIXELS = 4;
+
+	private static final int PREDATOR_COLOR = 0x9932CC;
+	private static final int DEAD_COLOR = 0x808080;
+	private static final int GRASS_COLOR = 0x208020;
+	/**
+	 * Colours given to the other species, in the order they're first seen
+	 */
+	private static final int SPECIES_COLORS[] = {0x00FFFF, 0xFFA500, 0xFFFF00, 0xFF69B4, 0xFFFFFF, 0x1E90FF, 0xFF4500};
+
+	private final int columns;
+	private final int rows;
+	private final WritableImage image;
+	private final int pixels[];
+
+	/**
+	 * Animals alive by species then cell, dead animals and grass amount by cell
+	 */
+	private int alive[][];
+	private final int dead[];
+	private final int grass[];
+
+	/**
+	 * Index in {@link #alive} of every species seen so far
+	 */
+	private final Map<Class<?>, Integer> speciesIndexes;
+	private int speciesColors[];
+	private int nbOtherSpecies;
+
+	Heatmap(double viewWidth, double viewHeight) {
+		this.columns = Math.max(1, (int) Math.ceil(viewWidth / CELL_PIXELS));
+		this.rows = Math.max(1, (int) Math.ceil(viewHeight / CELL_PIXELS));
+		this.image = new WritableImage(columns, rows);
+		this.pixels = new int[columns * rows];
+		this.alive = new int[0][];
+		this.dead = new int[columns * rows];
+		this.grass = new int[columns * rows];
+		this.speciesIndexes = new IdentityHashMap<Class<?>, Integer>();
+		this.speciesColors = new int[0];
+		this.nbOtherSpecies = 0;
+	}
+
+	/**
+	 * Draws the heatmap of what camera sees over the whole view, g not being transformed
+	 */
+	void draw(FrameSnapshot frame, Camera camera, GraphicsContext g) {
+		for (int s[] : alive) {
+			Arrays.fill(s, 0);
+		}
+		Arrays.fill(dead, 0);
+		Arrays.fill(grass, 0);
+
+		final double left = camera.getLeft();
+		final double top = camera.getTop();
+		final double cellsPerUnit = camera.getZoom() / CELL_PIXELS;
+
+		Class<?> lastClass = null;
+		int counts[] = null;
+		for (int i = 0 ; i < frame.nbAnimals ; i++) {
+			int cell = cellOf(frame.animalX[i], frame.animalY[i], left, top, cellsPerUnit);
+			if (cell < 0) {
+				continue;
+			}
+			if (frame.dead[i]) {
+				dead[cell]++;
+				continue;
+			}
+			// Animals of a same species often follow each other
+			if (frame.species[i] != lastClass) {
+				lastClass = frame.species[i];
+				counts = alive[indexOf(lastClass)];
+			}
+			counts[cell]++;
+		}
+		for (int i = 0 ; i < frame.nbGrass ; i++) {
+			int cell = cellOf(frame.grassX[i], frame.grassY[i], left, top, cellsPerUnit);
+			if (cell >= 0) {
+				grass[cell] += frame.grassAmount[i];
+			}
+		}
+
+		int maxAnimals = 1;
+		int maxGrass = 1;
+		for (int c = 0 ; c < pixels.length ; c++) {
+			int total = dead[c];
+			for (int s[] : alive) {
+				total += s[c];
+			}
+			// Kept there for the colouring pass
+			pixels[c] = total;
+			maxAnimals = Math.max(maxAnimals, total);
+			maxGrass = Math.max(maxGrass, grass[c]);
+		}
+		final double logMaxAnimals = Math.log1p(maxAnimals);
+		final double logMaxGrass = Math.log1p(maxGrass);
+
+		for (int c = 0 ; c < pixels.length ; c++) {
+			int total = pixels[c];
+			double grassIntensity = grass[c] == 0 ? 0 : 0.3 + 0.7 * Math.log1p(grass[c]) / logMaxGrass;
+			if (total == 0) {
+				pixels[c] = argb(grassIntensity, GRASS_COLOR);
+				continue;
+			}
+			// Average colour of the animals in the cell
+			double r = ((DEAD_COLOR >> 16) & 0xFF) * dead[c];
+			double gr = ((DEAD_COLOR >> 8) & 0xFF) * dead[c];
+			double b = (DEAD_COLOR & 0xFF) * dead[c];
+			for (int s = 0 ; s < alive.length ; s++) {
+				int n = alive[s][c];
+				if (n > 0) {
+					r += ((speciesColors[s] >> 16) & 0xFF) * n;
+					gr += ((speciesColors[s] >> 8) & 0xFF) * n;
+					b += (speciesColors[s] & 0xFF) * n;
+				}
+			}
+			double animalIntensity = 0.4 + 0.6 * Math.log1p(total) / logMaxAnimals;
+			int color = ((int) (r / total) << 16) | ((int) (gr / total) << 8) | (int) (b / total);
+			pixels[c] = argb(1, mix(GRASS_COLOR, grassIntensity, color, animalIntensity));
+		}
+
+		image.getPixelWriter().setPixels(0, 0, columns, rows, PixelFormat.getIntArgbInstance(), pixels, 0, columns);
+		g.drawImage(image, 0, 0, columns * CELL_PIXELS, rows * CELL_PIXELS);
+	}
+
+	/**
+	 * @return the cell of the image where (x,y) of the map is, -1 if it isn't in view
+	 */
+	private int cellOf(int x, int y, double left, double top, double cellsPerUnit) {
+		double column = (x - left) * cellsPerUnit;
+		double row = (y - top) * cellsPerUnit;
+		if (column < 0 || row < 0 || column >= columns || row >= rows) {
+			return -1;
+		}
+		return (int) column + (int) row * columns;
+	}
+
+	private int indexOf(Class<?> species) {
+		Integer index = speciesIndexes.get(species);
+		if (index == null) {
+			index = alive.length;
+			speciesIndexes.put(species, index);
+			alive = Arrays.copyOf(alive, index + 1);
+			alive[index] = new int[columns * rows];
+			speciesColors = Arrays.copyOf(speciesColors, index + 1);
+			if (Predator.class.isAssignableFrom(species)) {
+				speciesColors[index] = PREDATOR_COLOR;
+			} else {
+				speciesColors[index] = SPECIES_COLORS[nbOtherSpecies % SPECIES_COLORS.length];
+				nbOtherSpecies++;
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Colour background with given intensity, covered by foreground with given intensity
+	 */
+	private static int mix(int background, double backgroundIntensity, int foreground, double foregroundIntensity) {
+		int res = 0;
+		for (int shift = 0 ; shift <= 16 ; shift += 8) {
+			double back = ((background >> shift) & 0xFF) * backgroundIntensity;
+			double front = (foreground >> shift) & 0xFF;
+			res |= ((int) (back + (front - back) * foregroundIntensity)) << shift;
+		}
+		return res;
+	}
+
+	/**
+	 * Opaque where intensity is 1, transparent where it's 0 so that rivers show through
+	 */
+	private static int argb(double intensity, int rgb) {
+		return ((int) (intensity * 255) << 24) | rgb;
+	}
+}
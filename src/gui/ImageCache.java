@@ -0,0 +1,123 @@
+package gui;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.WritableImage;
+
+/**
+ * Images of animals, loaded once per tile path (the first time an animal registered with {@link model.management.Animal#changeImage(String)} is drawn)
+ * then copied into a single texture atlas, so that drawing thousands of animals never touches the file system and only uses one texture.
+ * Images too big for what's left of the atlas are kept on their own.
+ * A path that can't be loaded is remembered as missing, so that it's not retried every frame.
+ * Only used from the JavaFX thread.
+ */
+final class ImageCache {
+	private static final int ATLAS_SIZE = 1024;
+
+	/**
+	 * Returned for paths that can't be loaded
+	 */
+	static final Tile MISSING = new Tile(null, 0, 0, 0, 0);
+
+	private final Map<String, Tile> tiles;
+
+	private final WritableImage atlas;
+
+	/**
+	 * Shelf packing : images are put left to right on the current shelf, and a new shelf starts below the tallest image of the previous one
+	 */
+	private int shelfX;
+	private int shelfY;
+	private int shelfHeight;
+
+	ImageCache() {
+		this.tiles = new HashMap<String, Tile>();
+		this.atlas = new WritableImage(ATLAS_SIZE, ATLAS_SIZE);
+		this.shelfX = 0;
+		this.shelfY = 0;
+		this.shelfHeight = 0;
+	}
+
+	/**
+	 * @return the image of that path, {@link #MISSING} if there is none
+	 */
+	Tile get(String tilePath) {
+		if (tilePath == null) {
+			return MISSING;
+		}
+		Tile tile = tiles.get(tilePath);
+		if (tile == null) {
+			tile = load(tilePath);
+			tiles.put(tilePath, tile);
+		}
+		return tile;
+	}
+
+	private Tile load(String tilePath) {
+		Image img = new Image("file:" + tilePath);
+		if (img.isError()) {
+			System.err.println(tilePath + " couldn't be drawn, animals using it will be drawn as circles");
+			return MISSING;
+		}
+		int width = (int) Math.ceil(img.getWidth());
+		int height = (int) Math.ceil(img.getHeight());
+		PixelReader reader = img.getPixelReader();
+		if (reader == null || !reserve(width, height)) {
+			return new Tile(img, 0, 0, width, height);
+		}
+		int x = shelfX - width;
+		atlas.getPixelWriter().setPixels(x, shelfY, width, height, reader, 0, 0);
+		return new Tile(atlas, x, shelfY, width, height);
+	}
+
+	/**
+	 * Makes room for an image at the end of the current shelf, or on a new one
+	 * @return false if the atlas is full. Otherwise {@link #shelfX} is just after the space reserved.
+	 */
+	private boolean reserve(int width, int height) {
+		if (width > ATLAS_SIZE || height > ATLAS_SIZE) {
+			return false;
+		}
+		if (shelfX + width > ATLAS_SIZE) {
+			shelfY += shelfHeight;
+			shelfX = 0;
+			shelfHeight = 0;
+		}
+		if (shelfY + height > ATLAS_SIZE) {
+			return false;
+		}
+		shelfX += width;
+		shelfHeight = Math.max(shelfHeight, height);
+		return true;
+	}
+
+	/**
+	 * Part of an image (the atlas, most of the time) showing an animal
+	 */
+	static final class Tile {
+		private final Image source;
+		private final int x;
+		private final int y;
+		final int width;
+		final int height;
+
+		private Tile(Image source, int x, int y, int width, int height) {
+			this.source = source;
+			this.x = x;
+			this.y = y;
+			this.width = width;
+			this.height = height;
+		}
+
+		/**
+		 * Draws the tile centered on (centerX,centerY)
+		 */
+		void draw(GraphicsContext g, double centerX, double centerY) {
+			g.drawImage(source, x, y, width, height, centerX - width / 2.0, centerY - height / 2.0, width, height);
+		}
+	}
+}
@@ -1,8 +1,6 @@
 package gui;
 
 import java.io.File;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 
 import javafx.animation.AnimationTimer;
 import javafx.animation.RotateTransition;
@@ -11,14 +9,16 @@ import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.scene.Group;
 import javafx.scene.Scene;
-import javafx.scene.canvas.Canvas;
-import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.Button;
 import javafx.scene.control.CheckBox;
-import javafx.scene.image.Image;
+import javafx.scene.control.ToggleButton;
+import javafx.scene.control.ToggleGroup;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
 import javafx.scene.layout.HBox;
+import javafx.scene.layout.Pane;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Rectangle;
@@ -27,16 +27,11 @@ import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import javafx.util.Duration;
 import model.GuineaPig;
-import model.Predator;
 import model.management.Animal;
-import model.management.Coordinate;
-import model.management.Grass;
-import model.management.River;
 import model.management.Simulator;
+import model.management.WorldConfiguration;
 
 /** TODO GUI-based ideas :
- * can speed up/slow down/pause the game
- * 
  * restart with several .class, with or without CPU predators
  * 
  * better graphics(rivers)
@@ -60,9 +55,38 @@ public class Main extends Application {
 
 	private Simulator simulator;
 
-	private GraphicsContext canvasGraphics;
+	/**
+	 * Runs {@link #simulator}, see {@link SimulationThread}
+	 */
+	private SimulationThread simulation;
+
+	/**
+	 * Tick of the last frame drawn, to only draw new ones
+	 */
+	private int lastDrawnTick;
+
+	/**
+	 * Speed chosen with the time controls, kept when restarting
+	 */
+	private long tickDelayNanos = MS_DELAY * 1_000_000L;
+	private boolean paused = false;
+
+	/**
+	 * Start of the current measure of ticks per second
+	 */
+	private int rateStartTick;
+	private long rateStartNanos;
+	private Text tickRateText;
 
-	private boolean drawDetectionDistance = true;
+	private WorldRenderer renderer;
+
+	/**
+	 * Last mouse position while dragging the map
+	 */
+	private double dragX;
+	private double dragY;
+
+	private final ImageCache images = new ImageCache();
 
 	private AnimationTimer timer;
 
@@ -70,9 +94,15 @@ public class Main extends Application {
 
 	Rectangle rect = new Rectangle(100, 100, 500, 200);
 
+	/**
+	 * Time between two ticks at normal speed
+	 */
 	public static final int MS_DELAY = 30;
+	public static final int FAST_FORWARD_FACTOR = 10;
+	public static final long RATE_PERIOD_NANOS = 500_000_000L;
 	public static final int ANIMAL_SIZE = 10;
 	public static final int LETTER_WIDTH = 3;
+	public static final double ZOOM_STEP = 1.1;
 	
 	public static void main(String[] args) {
 		launch(args);
@@ -80,7 +110,7 @@ public class Main extends Application {
 
 	@Override
 	public void start(Stage s) {
-		this.simulator = new Simulator(GuineaPig.class, true); 
+		this.simulator = new Simulator(GuineaPig.class, true, WorldConfiguration.fitToScreen());
 		this.stage = s;
 
 		setup();
@@ -96,22 +126,65 @@ public class Main extends Application {
 		stage.show();
 	}
 
+	@Override
+	public void stop() {
+		simulation.shutdown();
+	}
+
 	private void setup() {
 		initComponents();
+		startSimulation();
 		
 		timer = new AnimationTimer() {
-			private long lastUpdate = 0;
 			public void handle(long now) {
-				if (now - lastUpdate >= MS_DELAY*1_000_000) {
-					lastUpdate = now;
-					simulator.nextTick();
-					repaint();					
+				FrameSnapshot frame = simulation.latestFrame();
+				if (frame.tick != lastDrawnTick) {
+					lastDrawnTick = frame.tick;
+					renderer.draw(frame);
 				}
+				updateTickRate(now, frame.tick);
 			}
 		};
 		timer.start();
 	}
 
+	/**
+	 * Runs {@link #simulator} in a new thread, stopping the one running the previous simulator if any
+	 */
+	private void startSimulation() {
+		if (simulation != null) {
+			simulation.shutdown();
+		}
+		lastDrawnTick = -1;
+		renderer.setWorld(simulator);
+		simulation = new SimulationThread(simulator, tickDelayNanos, paused);
+		simulation.start();
+		rateStartTick = simulator.getTicksElapsed();
+		rateStartNanos = System.nanoTime();
+	}
+
+	/**
+	 * @param tickDelayNanos time between the start of two ticks, 0 to run as fast as possible
+	 */
+	private void setSpeed(long tickDelayNanos, boolean paused) {
+		this.tickDelayNanos = tickDelayNanos;
+		this.paused = paused;
+		simulation.setTickDelayNanos(tickDelayNanos);
+		simulation.setPaused(paused);
+	}
+
+	/**
+	 * Shows how many ticks ran per second, measured over {@link #RATE_PERIOD_NANOS}
+	 */
+	private void updateTickRate(long now, int tick) {
+		if (now - rateStartNanos >= RATE_PERIOD_NANOS) {
+			double rate = (tick - rateStartTick) * 1e9 / (now - rateStartNanos);
+			tickRateText.setText(String.format("%.0f ticks/s (tick %d)", rate, tick));
+			rateStartTick = tick;
+			rateStartNanos = now;
+		}
+	}
+
 	private void initComponents() {
 		Group root = new Group();
 
@@ -120,7 +193,33 @@ public class Main extends Application {
 
 		VBox vbox = new VBox(5);
 
-		Canvas canvas = new Canvas(simulator.MAP_WIDTH, simulator.MAP_HEIGHT);
+		// The view is only as big as the screen allows, the camera showing the rest of the map
+		WorldConfiguration screen = WorldConfiguration.fitToScreen();
+		renderer = new WorldRenderer(Math.min(simulator.MAP_WIDTH, screen.getMapWidth()), Math.min(simulator.MAP_HEIGHT, screen.getMapHeight()), images);
+		Pane view = renderer.getView();
+		view.setOnScroll(new EventHandler<ScrollEvent>() {
+			@Override
+			public void handle(ScrollEvent event) {
+				renderer.getCamera().zoomAt(event.getX(), event.getY(), event.getDeltaY() > 0 ? ZOOM_STEP : 1 / ZOOM_STEP);
+				cameraMoved();
+			}
+		});
+		view.setOnMousePressed(new EventHandler<MouseEvent>() {
+			@Override
+			public void handle(MouseEvent event) {
+				dragX = event.getX();
+				dragY = event.getY();
+			}
+		});
+		view.setOnMouseDragged(new EventHandler<MouseEvent>() {
+			@Override
+			public void handle(MouseEvent event) {
+				renderer.getCamera().pan(event.getX() - dragX, event.getY() - dragY);
+				dragX = event.getX();
+				dragY = event.getY();
+				cameraMoved();
+			}
+		});
 
 		Button button = new Button("Change animal AI");
 		final Stage s = stage;
@@ -130,12 +229,51 @@ public class Main extends Application {
 				onRestartButtonClick(s);
 			}
 		});
-		vbox.getChildren().add(button);
-		vbox.getChildren().add(canvas);
+		final CheckBox heatmapCheckbox = new CheckBox("Heatmap");
+		heatmapCheckbox.setOnAction(new EventHandler<ActionEvent>() {
+			@Override
+			public void handle(ActionEvent event) {
+				renderer.setHeatmapMode(heatmapCheckbox.isSelected());
+				lastDrawnTick = -1;
+			}
+		});
+		ToggleGroup speeds = new ToggleGroup();
+		ToggleButton pauseButton = speedButton("Pause", speeds, 0, true);
+		ToggleButton normalButton = speedButton("1x", speeds, MS_DELAY * 1_000_000L, false);
+		ToggleButton fastButton = speedButton("" + FAST_FORWARD_FACTOR + "x", speeds, MS_DELAY * 1_000_000L / FAST_FORWARD_FACTOR, false);
+		ToggleButton maxButton = speedButton("Max", speeds, 0, false);
+		normalButton.setSelected(true);
+		tickRateText = new Text("");
+
+		HBox toolbar = new HBox(20);
+		toolbar.getChildren().add(button);
+		toolbar.getChildren().add(heatmapCheckbox);
+		toolbar.getChildren().addAll(pauseButton, normalButton, fastButton, maxButton);
+		toolbar.getChildren().add(tickRateText);
+		vbox.getChildren().add(toolbar);
+		vbox.getChildren().add(view);
 
 		root.getChildren().add(vbox);
+	}
+
+	private ToggleButton speedButton(String text, ToggleGroup group, final long tickDelayNanos, final boolean pause) {
+		ToggleButton speedButton = new ToggleButton(text);
+		speedButton.setToggleGroup(group);
+		speedButton.setOnAction(new EventHandler<ActionEvent>() {
+			@Override
+			public void handle(ActionEvent event) {
+				setSpeed(pause ? Main.this.tickDelayNanos : tickDelayNanos, pause);
+			}
+		});
+		return speedButton;
+	}
 
-		canvasGraphics = canvas.getGraphicsContext2D();
+	/**
+	 * Redraws the current frame from the new point of view, even if the simulation is paused
+	 */
+	private void cameraMoved() {
+		renderer.cameraMoved();
+		lastDrawnTick = -1;
 	}
 
 	private void onRestartButtonClick(Stage mainSimulatorStage) {
@@ -182,11 +320,12 @@ public class Main extends Application {
 				String className = splits[0];
 				try {
 					Class<?> race = Class.forName(className);
-					Constructor<?> constructor = race.getConstructor(int.class, int.class, Simulator.class);
-					Object instance = constructor.newInstance(10, 20, simulator);
+					// Not instantiated here, the running simulator being only used by its own thread
+					race.getConstructor(int.class, int.class, Simulator.class);
 
-					if (instance instanceof Animal) {
-						this.simulator = new Simulator(race, predators);
+					if (Animal.class.isAssignableFrom(race)) {
+						this.simulator = new Simulator(race, predators, WorldConfiguration.fitToScreen());
+						startSimulation();
 					} else {
 						errorMsg("It should extend Animal !");
 					}
@@ -198,12 +337,6 @@ public class Main extends Application {
 					e.printStackTrace();
 				} catch (NoSuchMethodException e) {
 					errorMsg("Class should have a public constructor with the same signature as Animal, and it should call super() with those parameters");
-				} catch (InstantiationException e) {
-					e.printStackTrace();
-				} catch (IllegalAccessException e) {
-					e.printStackTrace();
-				} catch (InvocationTargetException e) {
-					e.printStackTrace();
 				}
 			} else {
 				errorMsg("Pick a file like MyOwnSubclassOfAnimal.class. Make sure it wasn't in a package when it was compiled. Also the class name must be the same as the one in the filename (ex : class Zebra in Zebra.class)");
@@ -218,72 +351,11 @@ public class Main extends Application {
 		alert.show();
 	}
 
-	private void repaint() {
-		canvasGraphics.clearRect(0, 0, simulator.MAP_WIDTH, simulator.MAP_HEIGHT);
-
-		//DRAW DETECTION DISTANCE
-		if (drawDetectionDistance) {
-			canvasGraphics.setGlobalAlpha(0.3);
-			for (Animal a : simulator.getAllAnimals()) {
-				canvasGraphics.setFill(a instanceof Predator ? Color.DARKORCHID : Color.CYAN);
-				if (a.isAlive()) {
-					final int radius = a.getDetectionDistanceValue();
-					canvasGraphics.fillOval(a.getPosX() - radius, 
-							a.getPosY() - radius, 
-							radius*2, radius*2);
-				}
-			}
-			canvasGraphics.setGlobalAlpha(1);
-		}
-
-		//DRAW GRASS
-		canvasGraphics.setFill(Color.GREEN);
-		for (Grass g : simulator.getAllFoodSources()) {
-			int grassRadius = g.getWidth();
-			canvasGraphics.fillOval(g.getPosX() - grassRadius, g.getPosY() - grassRadius, grassRadius*2, grassRadius*2);
-			String info = Integer.toString(g.getAmount());
-			canvasGraphics.fillText(info, g.getPosX() - (LETTER_WIDTH * info.length()), g.getPosY() - grassRadius);
-		}
-		
-		//DRAW RIVERS
-		for (River r : simulator.getAllRivers()) {
-			Coordinate nodes[] = r.getNodes();
-			for (int i = 0 ; i < nodes.length-1 ; i++) {
-				Coordinate node1 = nodes[i];
-				Coordinate node2 = nodes[i+1];
-				canvasGraphics.setStroke(Color.BLUE);
-				canvasGraphics.strokeLine(node1.getX(), node1.getY(), node2.getX(), node2.getY());
-			}
-		}
-
-		//DRAW ANIMALS
-		for (Animal a : simulator.getAllAnimals()) {
-			canvasGraphics.setFill(a.isDead() ? Color.RED : Color.BLUE);
-			Image img = new Image("file:" + (a.isDead() ? a.getDeadTilePath() : a.getTilePath()));
-			final int animalRepresentationSize;
-
-			if (img.isError()) {
-				animalRepresentationSize = ANIMAL_SIZE;
-				canvasGraphics.fillOval(
-						a.getPosX()-animalRepresentationSize/2, 
-						a.getPosY()-animalRepresentationSize/2, animalRepresentationSize, animalRepresentationSize);
-			} else {
-				animalRepresentationSize = (int) Math.ceil(img.getHeight());
-				canvasGraphics.drawImage(img, 
-						a.getPosX()-img.getWidth()/2, 
-						a.getPosY()-img.getHeight()/2);
-			}
-			String info = "[" + a.getGeneration() + "] " + Integer.toString(a.getFullness());
-			canvasGraphics.fillText(info, a.getPosX() - (LETTER_WIDTH * info.length()), a.getPosY() - animalRepresentationSize/2);
-		}
-		
-	}
-
 	public boolean isDrawDetectionDistance() {
-		return drawDetectionDistance;
+		return renderer.isDrawDetectionDistance();
 	}
 
 	public void setDrawDetectionDistance(boolean drawDetectionDistance) {
-		this.drawDetectionDistance = drawDetectionDistance;
+		renderer.setDrawDetectionDistance(drawDetectionDistance);
 	}
 }
\ No newline at end of file
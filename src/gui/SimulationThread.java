@@ -0,0 +1,184 @@
+package gui;
+
+import model.management.Simulator;
+
+/**
+ * Runs a simulator at its own pace, away from the JavaFX thread, and publishes what is to be drawn through three {@link FrameSnapshot} :
+ * the front one, which the UI draws, the ready one, which is the latest complete frame, and a spare one, which this thread fills.
+ * A slow tick thus never freezes the UI, and ticks aren't limited to one per frame : when ticks are faster than frames,
+ * only the state after the last tick of each frame ({@link #FRAME_NANOS}) is copied, the others being skipped.
+ */
+final class SimulationThread extends Thread {
+	/**
+	 * Time between two frames of the UI, at most one frame being copied during that time
+	 */
+	static final long FRAME_NANOS = 16_666_667L;
+
+	private final Simulator simulator;
+
+	/**
+	 * Time between the start of two ticks, 0 to run as fast as possible
+	 */
+	private volatile long tickDelayNanos;
+
+	private volatile boolean paused;
+
+	private volatile boolean running;
+
+	/**
+	 * Held while looking at or swapping frames, and waited on between ticks or while paused
+	 */
+	private final Object frameLock = new Object();
+	private FrameSnapshot front;
+	private FrameSnapshot ready;
+	private FrameSnapshot spare;
+
+	/**
+	 * True when {@link #ready} holds a frame the UI hasn't taken yet
+	 */
+	private boolean readyIsNew;
+
+	/**
+	 * When and at which tick the last frame was copied
+	 */
+	private long lastPublishNanos;
+	private int lastPublishedTick;
+
+	SimulationThread(Simulator simulator, long tickDelayNanos, boolean paused) {
+		super("simulation");
+		setDaemon(true);
+		this.simulator = simulator;
+		this.tickDelayNanos = tickDelayNanos;
+		this.paused = paused;
+		this.running = true;
+		this.front = new FrameSnapshot();
+		this.front.fill(simulator);
+		this.ready = new FrameSnapshot();
+		this.spare = new FrameSnapshot();
+		this.readyIsNew = false;
+		this.lastPublishNanos = System.nanoTime();
+		this.lastPublishedTick = simulator.getTicksElapsed();
+	}
+
+	@Override
+	public void run() {
+		long nextTickStart = System.nanoTime();
+		while (running) {
+			if (paused) {
+				if (lastPublishedTick != simulator.getTicksElapsed()) {
+					publishFrame();
+				}
+				waitWhilePaused();
+				nextTickStart = System.nanoTime();
+				continue;
+			}
+
+			simulator.nextTick();
+			long delay = tickDelayNanos;
+			if (delay >= FRAME_NANOS || System.nanoTime() - lastPublishNanos >= FRAME_NANOS) {
+				publishFrame();
+			}
+
+			if (delay > 0) {
+				nextTickStart += delay;
+				long wait = nextTickStart - System.nanoTime();
+				if (wait > 0) {
+					waitBeforeNextTick(wait);
+				} else {
+					// Late : no rush to catch up
+					nextTickStart = System.nanoTime();
+				}
+			} else {
+				nextTickStart = System.nanoTime();
+			}
+		}
+	}
+
+	/**
+	 * Waits, unless woken up earlier to stop, pause or apply a new delay.
+	 * The thread is never interrupted, since it may be in the middle of a tick.
+	 */
+	private void waitBeforeNextTick(long nanos) {
+		synchronized (frameLock) {
+			if (running && !paused) {
+				try {
+					frameLock.wait(nanos / 1_000_000, (int) (nanos % 1_000_000));
+				} catch (InterruptedException e) {
+					// Nobody interrupts this thread
+				}
+			}
+		}
+	}
+
+	private void waitWhilePaused() {
+		synchronized (frameLock) {
+			while (paused && running) {
+				try {
+					frameLock.wait();
+				} catch (InterruptedException e) {
+					// Nobody interrupts this thread
+				}
+			}
+		}
+	}
+
+	/**
+	 * Copies the current state in the spare frame, which then becomes the ready one
+	 */
+	private void publishFrame() {
+		// Only this thread touches the spare frame, so it can be filled outside of the lock
+		spare.fill(simulator);
+		synchronized (frameLock) {
+			FrameSnapshot previous = ready;
+			ready = spare;
+			spare = previous;
+			readyIsNew = true;
+		}
+		lastPublishNanos = System.nanoTime();
+		lastPublishedTick = simulator.getTicksElapsed();
+	}
+
+	/**
+	 * Only called from the JavaFX thread
+	 * @return the last frame published, which won't change until the next call
+	 */
+	FrameSnapshot latestFrame() {
+		synchronized (frameLock) {
+			if (readyIsNew) {
+				FrameSnapshot previous = front;
+				front = ready;
+				ready = previous;
+				readyIsNew = false;
+			}
+			return front;
+		}
+	}
+
+	Simulator getSimulator() {
+		return simulator;
+	}
+
+	void setTickDelayNanos(long tickDelayNanos) {
+		synchronized (frameLock) {
+			this.tickDelayNanos = tickDelayNanos;
+			frameLock.notifyAll();
+		}
+	}
+
+	void setPaused(boolean paused) {
+		synchronized (frameLock) {
+			this.paused = paused;
+			frameLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Stops after the current tick
+	 */
+	void shutdown() {
+		synchronized (frameLock) {
+			running = false;
+			frameLock.notifyAll();
+		}
+	}
+}
@@ -0,0 +1,326 @@
+package gui;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import model.management.Coordinate;
+import model.management.River;
+import model.management.Simulator;
+import model.management.SpatialGrid;
+
+/**
+ * Draws what {@link Camera} sees of a world on three stacked canvases, so that what doesn't change isn't drawn again every frame :
+ * <ul>
+ * <li>rivers, which never change, only drawn when the camera moves</li>
+ * <li>grass, redrawn only around the patches that appeared, disappeared or changed since the previous frame</li>
+ * <li>animals and their detection distances, redrawn every frame</li>
+ * </ul>
+ * In heatmap mode, grass and animals are replaced by a {@link Heatmap} on the animal layer.
+ * Only used from the JavaFX thread.
+ */
+final class WorldRenderer {
+	/**
+	 * How far outside of the view an animal, its image or its label can still be seen
+	 */
+	static final int ANIMAL_MARGIN = 64;
+
+	/**
+	 * Room taken around a grass patch by its label
+	 */
+	private static final int GRASS_LABEL_MARGIN = 20;
+
+	/**
+	 * Above that fraction of the grass in view changing, the whole grass layer is redrawn rather than each patch
+	 */
+	private static final double FULL_GRASS_REDRAW_RATIO = 0.25;
+
+	private final Canvas riverLayer;
+	private final Canvas grassLayer;
+	private final Canvas animalLayer;
+	private final Pane view;
+
+	private final ImageCache images;
+
+	private Simulator simulator;
+	private Camera camera;
+
+	/**
+	 * False when the camera or the world changed, so that rivers and grass have to be redrawn entirely
+	 */
+	private boolean staticLayersValid;
+
+	/**
+	 * Grass in view as it was last drawn : position (see {@link #key(int, int)}) to amount and width
+	 */
+	private Map<Long, Long> drawnGrass;
+	private Map<Long, Long> nextDrawnGrass;
+
+	private boolean drawDetectionDistance;
+
+	/**
+	 * When set, animals and grass are drawn as a {@link Heatmap}
+	 */
+	private boolean heatmapMode;
+	private final Heatmap heatmap;
+
+	/**
+	 * Reused for the animals and grass in view
+	 */
+	private final SpatialGrid.Hits visible = new SpatialGrid.Hits();
+	private final SpatialGrid.Hits visibleGrass = new SpatialGrid.Hits();
+
+	/**
+	 * Grass in view that changed since the last frame, with the largest radius it had then or now
+	 */
+	private int dirtyGrass[] = new int[64];
+	private int dirtyRadius[] = new int[64];
+	private int nbDirtyGrass;
+
+	WorldRenderer(double width, double height, ImageCache images) {
+		this.riverLayer = new Canvas(width, height);
+		this.grassLayer = new Canvas(width, height);
+		this.animalLayer = new Canvas(width, height);
+		this.view = new Pane(riverLayer, grassLayer, animalLayer);
+		this.view.setPrefSize(width, height);
+		this.images = images;
+		this.drawnGrass = new HashMap<Long, Long>();
+		this.nextDrawnGrass = new HashMap<Long, Long>();
+		this.drawDetectionDistance = true;
+		this.heatmapMode = false;
+		this.heatmap = new Heatmap(width, height);
+		this.staticLayersValid = false;
+	}
+
+	/**
+	 * The canvases, stacked
+	 */
+	Pane getView() {
+		return view;
+	}
+
+	/**
+	 * Starts showing another world, from a camera showing all of it
+	 */
+	void setWorld(Simulator simulator) {
+		this.simulator = simulator;
+		this.camera = new Camera(simulator.MAP_WIDTH, simulator.MAP_HEIGHT, animalLayer.getWidth(), animalLayer.getHeight());
+		this.staticLayersValid = false;
+	}
+
+	Camera getCamera() {
+		return camera;
+	}
+
+	/**
+	 * To be called after moving the camera
+	 */
+	void cameraMoved() {
+		staticLayersValid = false;
+	}
+
+	boolean isDrawDetectionDistance() {
+		return drawDetectionDistance;
+	}
+
+	void setDrawDetectionDistance(boolean drawDetectionDistance) {
+		this.drawDetectionDistance = drawDetectionDistance;
+	}
+
+	boolean isHeatmapMode() {
+		return heatmapMode;
+	}
+
+	void setHeatmapMode(boolean heatmapMode) {
+		this.heatmapMode = heatmapMode;
+		this.staticLayersValid = false;
+	}
+
+	void draw(FrameSnapshot frame) {
+		final boolean drawLabels = camera.getZoom() >= Camera.LABELS_MIN_ZOOM;
+
+		// Every query covers the view, plus how far outside of it an entity can still be seen
+		final int centerX = (int) ((camera.getLeft() + camera.getRight()) / 2);
+		final int centerY = (int) ((camera.getTop() + camera.getBottom()) / 2);
+		final int halfView = (int) Math.ceil(Math.max(camera.getRight() - camera.getLeft(), camera.getBottom() - camera.getTop()) / 2);
+
+		if (!staticLayersValid) {
+			drawRivers();
+		}
+		if (heatmapMode) {
+			if (!staticLayersValid) {
+				grassLayer.getGraphicsContext2D().clearRect(0, 0, grassLayer.getWidth(), grassLayer.getHeight());
+				drawnGrass.clear();
+			}
+			staticLayersValid = true;
+			GraphicsContext g = animalLayer.getGraphicsContext2D();
+			g.clearRect(0, 0, animalLayer.getWidth(), animalLayer.getHeight());
+			heatmap.draw(frame, camera, g);
+			return;
+		}
+		drawGrass(frame, centerX, centerY, halfView, drawLabels);
+		staticLayersValid = true;
+		drawAnimals(frame, centerX, centerY, halfView, drawLabels);
+	}
+
+	private void drawRivers() {
+		GraphicsContext g = riverLayer.getGraphicsContext2D();
+		g.clearRect(0, 0, riverLayer.getWidth(), riverLayer.getHeight());
+		camera.apply(g);
+		g.setStroke(Color.BLUE);
+		for (River r : simulator.getAllRivers()) {
+			Coordinate nodes[] = r.getNodes();
+			for (int i = 0 ; i < nodes.length-1 ; i++) {
+				Coordinate node1 = nodes[i];
+				Coordinate node2 = nodes[i+1];
+				if (Math.max(node1.getX(), node2.getX()) >= camera.getLeft() && Math.min(node1.getX(), node2.getX()) <= camera.getRight()
+						&& Math.max(node1.getY(), node2.getY()) >= camera.getTop() && Math.min(node1.getY(), node2.getY()) <= camera.getBottom()) {
+					g.strokeLine(node1.getX(), node1.getY(), node2.getX(), node2.getY());
+				}
+			}
+		}
+		g.restore();
+	}
+
+	/**
+	 * Compares the grass in view with what was last drawn, then either redraws the whole layer or only the squares around the patches that changed
+	 */
+	private void drawGrass(FrameSnapshot frame, int centerX, int centerY, int halfView, boolean drawLabels) {
+		frame.grassGrid.query(centerX, centerY, halfView + frame.maxGrassWidth + GRASS_LABEL_MARGIN, visibleGrass);
+
+		nextDrawnGrass.clear();
+		nbDirtyGrass = 0;
+		for (int k = 0 ; k < visibleGrass.size() ; k++) {
+			int i = visibleGrass.get(k);
+			Long key = key(frame.grassX[i], frame.grassY[i]);
+			long state = ((long) frame.grassAmount[i] << 32) | (frame.grassWidth[i] & 0xFFFFFFFFL);
+			Long previous = drawnGrass.remove(key);
+			if (previous == null || previous.longValue() != state) {
+				if (nbDirtyGrass == dirtyGrass.length) {
+					dirtyGrass = Arrays.copyOf(dirtyGrass, nbDirtyGrass * 2);
+					dirtyRadius = Arrays.copyOf(dirtyRadius, nbDirtyGrass * 2);
+				}
+				dirtyGrass[nbDirtyGrass] = i;
+				dirtyRadius[nbDirtyGrass] = previous == null ? frame.grassWidth[i] : Math.max(frame.grassWidth[i], (int) previous.longValue());
+				nbDirtyGrass++;
+			}
+			nextDrawnGrass.put(key, state);
+		}
+		// What's left was drawn, but isn't there anymore
+		final boolean fullRedraw = !staticLayersValid || nbDirtyGrass + drawnGrass.size() > FULL_GRASS_REDRAW_RATIO * visibleGrass.size();
+
+		GraphicsContext g = grassLayer.getGraphicsContext2D();
+		if (fullRedraw) {
+			g.clearRect(0, 0, grassLayer.getWidth(), grassLayer.getHeight());
+			camera.apply(g);
+			g.setFill(Color.GREEN);
+			for (int k = 0 ; k < visibleGrass.size() ; k++) {
+				drawGrass(g, frame, visibleGrass.get(k), drawLabels);
+			}
+			g.restore();
+		} else {
+			camera.apply(g);
+			g.setFill(Color.GREEN);
+			for (int k = 0 ; k < nbDirtyGrass ; k++) {
+				int i = dirtyGrass[k];
+				redrawGrassAround(g, frame, frame.grassX[i], frame.grassY[i], dirtyRadius[k], drawLabels);
+			}
+			for (Map.Entry<Long, Long> removed : drawnGrass.entrySet()) {
+				long key = removed.getKey();
+				redrawGrassAround(g, frame, (int) (key >> 32), (int) key, (int) removed.getValue().longValue(), drawLabels);
+			}
+			g.restore();
+		}
+
+		Map<Long, Long> swap = drawnGrass;
+		drawnGrass = nextDrawnGrass;
+		nextDrawnGrass = swap;
+	}
+
+	/**
+	 * Clears the square around a grass patch of given radius, and draws again whatever grass overlaps it, clipped to the square
+	 */
+	private void redrawGrassAround(GraphicsContext g, FrameSnapshot frame, int x, int y, int radius, boolean drawLabels) {
+		// A pixel more, for anti-aliasing
+		double half = radius + GRASS_LABEL_MARGIN + 1 / camera.getZoom();
+		g.save();
+		g.clearRect(x - half, y - half, half * 2, half * 2);
+		g.beginPath();
+		g.rect(x - half, y - half, half * 2, half * 2);
+		g.clip();
+		frame.grassGrid.query(x, y, (int) Math.ceil(half) + frame.maxGrassWidth + GRASS_LABEL_MARGIN, visible);
+		for (int k = 0 ; k < visible.size() ; k++) {
+			drawGrass(g, frame, visible.get(k), drawLabels);
+		}
+		g.restore();
+	}
+
+	private void drawGrass(GraphicsContext g, FrameSnapshot frame, int i, boolean drawLabels) {
+		int grassRadius = frame.grassWidth[i];
+		g.fillOval(frame.grassX[i] - grassRadius, frame.grassY[i] - grassRadius, grassRadius*2, grassRadius*2);
+		if (drawLabels) {
+			String info = Integer.toString(frame.grassAmount[i]);
+			g.fillText(info, frame.grassX[i] - (Main.LETTER_WIDTH * info.length()), frame.grassY[i] - grassRadius);
+		}
+	}
+
+	private void drawAnimals(FrameSnapshot frame, int centerX, int centerY, int halfView, boolean drawLabels) {
+		final boolean drawDetection = drawDetectionDistance && camera.getZoom() >= Camera.DETECTION_MIN_ZOOM;
+
+		GraphicsContext g = animalLayer.getGraphicsContext2D();
+		g.clearRect(0, 0, animalLayer.getWidth(), animalLayer.getHeight());
+		camera.apply(g);
+
+		//DRAW DETECTION DISTANCE
+		frame.animalGrid.query(centerX, centerY, halfView + Math.max(ANIMAL_MARGIN, drawDetection ? frame.maxDetectionDistance : 0), visible);
+		if (drawDetection) {
+			g.setGlobalAlpha(0.3);
+			for (int k = 0 ; k < visible.size() ; k++) {
+				int i = visible.get(k);
+				final int radius = frame.detectionDistance[i];
+				if (!frame.dead[i] && camera.isVisible(frame.animalX[i], frame.animalY[i], radius)) {
+					g.setFill(frame.predator[i] ? Color.DARKORCHID : Color.CYAN);
+					g.fillOval(frame.animalX[i] - radius,
+							frame.animalY[i] - radius,
+							radius*2, radius*2);
+				}
+			}
+			g.setGlobalAlpha(1);
+		}
+
+		//DRAW ANIMALS
+		for (int k = 0 ; k < visible.size() ; k++) {
+			int i = visible.get(k);
+			if (!camera.isVisible(frame.animalX[i], frame.animalY[i], ANIMAL_MARGIN)) {
+				continue;
+			}
+			g.setFill(frame.dead[i] ? Color.RED : Color.BLUE);
+			ImageCache.Tile tile = images.get(frame.tilePath[i]);
+			final int animalRepresentationSize;
+
+			if (tile == ImageCache.MISSING) {
+				animalRepresentationSize = Main.ANIMAL_SIZE;
+				g.fillOval(
+						frame.animalX[i]-animalRepresentationSize/2,
+						frame.animalY[i]-animalRepresentationSize/2, animalRepresentationSize, animalRepresentationSize);
+			} else {
+				animalRepresentationSize = tile.height;
+				tile.draw(g, frame.animalX[i], frame.animalY[i]);
+			}
+			if (drawLabels) {
+				String info = "[" + frame.generation[i] + "] " + Integer.toString(frame.fullness[i]);
+				g.fillText(info, frame.animalX[i] - (Main.LETTER_WIDTH * info.length()), frame.animalY[i] - animalRepresentationSize/2);
+			}
+		}
+
+		g.restore();
+	}
+
+	private static Long key(int x, int y) {
+		return ((long) x << 32) | (y & 0xFFFFFFFFL);
+	}
+}
@@ -0,0 +1,271 @@
+package headless;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import model.GuineaPig;
+import model.management.AiAccounting;
+import model.management.Animal;
+import model.management.EventJournal;
+import model.management.Simulator;
+import model.management.WorldCheckpoint;
+import model.management.WorldConfiguration;
+
+/**
+ * Runs a simulation without any display, as fast as possible, then prints how fast it went and what's left of the world.
+ * Usage : see {@link #USAGE}
+ */
+public class HeadlessRunner {
+	public static final String USAGE = "java headless.HeadlessRunner [--ticks N] [--width W] [--height H] [--animals N] [--predators N] [--grass N] [--no-predators] [--race ClassName] [--species ClassName=N,ClassName=N...] [--parallel] [--regions N] [--neighbour-skin N] [--data-oriented] [--pooled-perception] [--seed N] [--resume FILE] [--checkpoint FILE] [--checkpoint-every N] [--journal FILE] [--monitor] [--ai-accounting] [--ai-budget MICROSECONDS]";
+
+	public static final int DEFAULT_TICKS = 10_000;
+	public static final int DEFAULT_MAP_WIDTH = 1900;
+	public static final int DEFAULT_MAP_HEIGHT = 930;
+
+	public static void main(String[] args) {
+		int ticks = DEFAULT_TICKS;
+		int width = DEFAULT_MAP_WIDTH;
+		int height = DEFAULT_MAP_HEIGHT;
+		Integer animals = null, predators = null, grass = null;
+		boolean withPredators = true;
+		boolean parallel = false;
+		int regions = 0;
+		int neighbourSkin = 0;
+		boolean dataOriented = false;
+		boolean pooledPerception = false;
+		boolean monitored = false;
+		boolean aiAccounting = false;
+		long aiBudgetMicros = 0;
+		Long seed = null;
+		Path resume = null, checkpoint = null, journal = null;
+		int checkpointEvery = 0;
+		Class<?> race = GuineaPig.class;
+		Map<Class<?>, Integer> species = null;
+		// Last option given that shapes a new world, which a resumed world already has
+		String worldOption = null;
+		WorldConfiguration config = null;
+
+		try {
+			for (int i = 0 ; i < args.length ; i++) {
+				switch (args[i]) {
+				case "--ticks":
+					ticks = Integer.parseInt(args[++i]);
+					break;
+				case "--width":
+					worldOption = args[i];
+					width = Integer.parseInt(args[++i]);
+					break;
+				case "--height":
+					worldOption = args[i];
+					height = Integer.parseInt(args[++i]);
+					break;
+				case "--animals":
+					worldOption = args[i];
+					animals = Integer.parseInt(args[++i]);
+					break;
+				case "--predators":
+					worldOption = args[i];
+					predators = Integer.parseInt(args[++i]);
+					break;
+				case "--grass":
+					worldOption = args[i];
+					grass = Integer.parseInt(args[++i]);
+					break;
+				case "--no-predators":
+					worldOption = args[i];
+					withPredators = false;
+					break;
+				case "--parallel":
+					parallel = true;
+					break;
+				case "--regions":
+					regions = Integer.parseInt(args[++i]);
+					break;
+				case "--neighbour-skin":
+					neighbourSkin = Integer.parseInt(args[++i]);
+					break;
+				case "--data-oriented":
+					dataOriented = true;
+					break;
+				case "--seed":
+					worldOption = args[i];
+					seed = Long.parseLong(args[++i]);
+					break;
+				case "--resume":
+					resume = Paths.get(args[++i]);
+					break;
+				case "--checkpoint":
+					checkpoint = Paths.get(args[++i]);
+					break;
+				case "--ai-accounting":
+					aiAccounting = true;
+					break;
+				case "--ai-budget":
+					aiBudgetMicros = Long.parseLong(args[++i]);
+					// Also keeps the budget in nanoseconds from overflowing
+					if (aiBudgetMicros < 0 || aiBudgetMicros > Long.MAX_VALUE / 1000) {
+						throw new IllegalArgumentException(aiBudgetMicros + " is not a valid budget");
+					}
+					break;
+				case "--monitor":
+					monitored = true;
+					break;
+				case "--journal":
+					journal = Paths.get(args[++i]);
+					break;
+				case "--checkpoint-every":
+					checkpointEvery = Integer.parseInt(args[++i]);
+					if (checkpointEvery <= 0) {
+						throw new IllegalArgumentException(checkpointEvery + " is not a valid number of ticks between checkpoints");
+					}
+					break;
+				case "--pooled-perception":
+					pooledPerception = true;
+					break;
+				case "--race":
+					worldOption = args[i];
+					race = Class.forName(args[++i]);
+					break;
+				case "--species":
+					worldOption = args[i];
+					species = new LinkedHashMap<Class<?>, Integer>();
+					for (String population : args[++i].split(",")) {
+						String parts[] = population.split("=");
+						if (parts.length != 2) {
+							throw new IllegalArgumentException("Expected ClassName=N, not " + population);
+						}
+						species.put(Class.forName(parts[0]), Integer.parseInt(parts[1]));
+					}
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown option " + args[i]);
+				}
+			}
+			if (resume != null && worldOption != null) {
+				throw new IllegalArgumentException(worldOption + " can't be used with --resume : the world comes from the checkpoint");
+			}
+			if (checkpointEvery > 0 && checkpoint == null) {
+				throw new IllegalArgumentException("--checkpoint-every needs --checkpoint FILE");
+			}
+
+			// Values the configuration refuses are invalid arguments too
+			config = new WorldConfiguration(width, height);
+			config.setParallel(parallel);
+			config.setRegions(regions);
+			config.setNeighbourSkin(neighbourSkin);
+			config.setDataOriented(dataOriented);
+			config.setPooledPerception(pooledPerception);
+			config.setMonitored(monitored);
+			config.setAiAccounting(aiAccounting);
+			config.setAiBudgetNanos(aiBudgetMicros * 1000);
+			if (seed != null) {
+				config.setSeed(seed);
+			}
+			if (animals != null) {
+				config.setStartingAnimals(animals);
+			}
+			if (predators != null) {
+				config.setStartingPredators(predators);
+			}
+			if (grass != null) {
+				config.setStartingVegetation(grass);
+			}
+		} catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+			System.err.println("Invalid arguments : " + e.getMessage());
+			System.err.println("Usage : " + USAGE);
+			System.exit(1);
+		} catch (ClassNotFoundException e) {
+			System.err.println("No such animal class : " + e.getMessage());
+			System.exit(1);
+		}
+		for (Class<?> c : species != null ? species.keySet() : Collections.<Class<?>>singleton(race)) {
+			if (!Animal.class.isAssignableFrom(c)) {
+				System.err.println(c.getName() + " should extend Animal !");
+				System.exit(1);
+			}
+		}
+
+		try {
+			Simulator simulator;
+			if (resume != null) {
+				// The world comes with its own size and population, but is run with the options given here
+				simulator = WorldCheckpoint.load(resume, config);
+				System.out.println("Resumed at tick " + simulator.getTicksElapsed());
+			} else if (species != null) {
+				// Every species given, predators included
+				simulator = new Simulator(species, config);
+			} else {
+				simulator = new Simulator(race, withPredators, config);
+			}
+			// Visible from jconsole or any JMX client while the run goes on
+			simulator.registerMonitor();
+
+			long start = System.nanoTime();
+			// Closed even if a checkpoint fails, so that what was recorded is written
+			try (EventJournal events = journal != null ? new EventJournal(journal) : null) {
+				simulator.setJournal(events);
+				for (int i = 1 ; i <= ticks ; i++) {
+					simulator.nextTick();
+					if (checkpoint != null && checkpointEvery > 0 && i % checkpointEvery == 0) {
+						WorldCheckpoint.save(simulator, checkpoint);
+					}
+				}
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+			if (checkpoint != null) {
+				WorldCheckpoint.save(simulator, checkpoint);
+			}
+
+			System.out.println(String.format("%d ticks in %.3f s : %.1f ticks/s (seed %d)", ticks, seconds, ticks / seconds, simulator.getSeed()));
+			printPopulation(simulator);
+			AiAccounting accounting = simulator.getAiAccounting();
+			if (accounting != null) {
+				System.out.print(accounting);
+				for (Class<?> c : accounting.getSpecies()) {
+					if (accounting.getOverruns(c) > 0) {
+						System.out.println(String.format("%s went over its budget of %d microseconds %d times, the rest of its calls being skipped for those ticks",
+								c.getName(), aiBudgetMicros, accounting.getOverruns(c)));
+					}
+				}
+			}
+			if (simulator.getMonitor() != null) {
+				System.out.println("Mean phase durations (microseconds) : " + simulator.getMonitor().getPhaseMeanMicros());
+				System.out.println("p99 phase durations (microseconds) : " + simulator.getMonitor().getPhaseP99Micros());
+			}
+		} catch (IOException e) {
+			System.err.println("Checkpoint or journal failed : " + e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	static void printPopulation(Simulator simulator) {
+		Map<String, int[]> speciesStats = new TreeMap<String, int[]>();
+		for (Class<?> species : simulator.getSpecies()) {
+			Collection<Animal> animals = simulator.getAnimals(species);
+			if (animals.isEmpty()) {
+				continue;
+			}
+			int stats[] = new int[3];
+			stats[0] = simulator.getPopulation(species);
+			stats[1] = animals.size() - stats[0];
+			for (Animal a : animals) {
+				stats[2] = Math.max(stats[2], a.getGeneration());
+			}
+			speciesStats.put(species.getName(), stats);
+		}
+		for (Map.Entry<String, int[]> entry : speciesStats.entrySet()) {
+			int stats[] = entry.getValue();
+			System.out.println(String.format("%s : %d alive, %d dead, max generation %d", entry.getKey(), stats[0], stats[1], stats[2]));
+		}
+		if (speciesStats.isEmpty()) {
+			System.out.println("No animal left");
+		}
+		System.out.println(simulator.getAllFoodSources().size() + " grass patches left");
+	}
+}
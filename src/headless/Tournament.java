@@ -0,0 +1,268 @@
+package headless;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import model.management.Animal;
+import model.management.Simulator;
+import model.management.WorldConfiguration;
+
+/**
+ * Compares animal AIs : every AI plays one match per seed, a match being a headless world of its own, and matches run concurrently on every core.
+ * A given seed gives the same map to every AI. A match stops when the AI goes extinct, or after the given number of ticks.
+ * Prints, for each AI, its survival time, peak population, max generation and extinction tick, averaged over its matches.
+ * Usage : see {@link #USAGE}
+ */
+public class Tournament {
+	public static final String USAGE = "java headless.Tournament --races ClassName,ClassName... [--seeds N] [--first-seed N] [--ticks N] [--width W] [--height H] [--animals N] [--predators N] [--grass N] [--no-predators] [--threads N]";
+
+	public static final int DEFAULT_SEEDS = 10;
+	public static final int DEFAULT_TICKS = 10_000;
+
+	public static void main(String[] args) {
+		List<Class<?>> races = new ArrayList<Class<?>>();
+		int seeds = DEFAULT_SEEDS;
+		long firstSeed = 1;
+		int ticks = DEFAULT_TICKS;
+		int width = HeadlessRunner.DEFAULT_MAP_WIDTH;
+		int height = HeadlessRunner.DEFAULT_MAP_HEIGHT;
+		Integer animals = null, predators = null, grass = null;
+		boolean withPredators = true;
+		int threads = Runtime.getRuntime().availableProcessors();
+
+		try {
+			for (int i = 0 ; i < args.length ; i++) {
+				switch (args[i]) {
+				case "--races":
+					for (String name : args[++i].split(",")) {
+						races.add(Class.forName(name));
+					}
+					break;
+				case "--seeds":
+					seeds = Integer.parseInt(args[++i]);
+					break;
+				case "--first-seed":
+					firstSeed = Long.parseLong(args[++i]);
+					break;
+				case "--ticks":
+					ticks = Integer.parseInt(args[++i]);
+					break;
+				case "--width":
+					width = Integer.parseInt(args[++i]);
+					break;
+				case "--height":
+					height = Integer.parseInt(args[++i]);
+					break;
+				case "--animals":
+					animals = Integer.parseInt(args[++i]);
+					break;
+				case "--predators":
+					predators = Integer.parseInt(args[++i]);
+					break;
+				case "--grass":
+					grass = Integer.parseInt(args[++i]);
+					break;
+				case "--no-predators":
+					withPredators = false;
+					break;
+				case "--threads":
+					threads = Integer.parseInt(args[++i]);
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown option " + args[i]);
+				}
+			}
+			if (races.isEmpty()) {
+				throw new IllegalArgumentException("No AI given");
+			}
+			if (seeds <= 0 || threads <= 0) {
+				throw new IllegalArgumentException("Seeds and threads must be positive");
+			}
+		} catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+			System.err.println("Invalid arguments : " + e.getMessage());
+			System.err.println("Usage : " + USAGE);
+			System.exit(1);
+		} catch (ClassNotFoundException e) {
+			System.err.println("No such animal class : " + e.getMessage());
+			System.exit(1);
+		}
+		for (Class<?> race : races) {
+			if (!Animal.class.isAssignableFrom(race)) {
+				System.err.println(race.getName() + " should extend Animal !");
+				System.exit(1);
+			}
+		}
+
+		List<Match> matches = new ArrayList<Match>();
+		for (Class<?> race : races) {
+			for (int s = 0 ; s < seeds ; s++) {
+				WorldConfiguration config = new WorldConfiguration(width, height);
+				config.setSeed(firstSeed + s);
+				if (animals != null) {
+					config.setStartingAnimals(animals);
+				}
+				if (predators != null) {
+					config.setStartingPredators(predators);
+				}
+				if (grass != null) {
+					config.setStartingVegetation(grass);
+				}
+				matches.add(new Match(race, withPredators, config, ticks));
+			}
+		}
+
+		System.out.println(String.format("%d matches (%d AIs x %d seeds, up to %d ticks) on %d threads", matches.size(), races.size(), seeds, ticks, threads));
+		long start = System.nanoTime();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		Map<Class<?>, List<MatchResult>> results = new LinkedHashMap<Class<?>, List<MatchResult>>();
+		for (Class<?> race : races) {
+			results.put(race, new ArrayList<MatchResult>());
+		}
+		try {
+			List<Future<MatchResult>> futures = executor.invokeAll(matches);
+			for (int i = 0 ; i < futures.size() ; i++) {
+				try {
+					MatchResult result = futures.get(i).get();
+					results.get(result.race).add(result);
+				} catch (ExecutionException e) {
+					Match match = matches.get(i);
+					System.err.println(match.race.getName() + " failed with seed " + match.config.getSeed() + " : " + e.getCause());
+				}
+			}
+		} catch (InterruptedException e) {
+			System.err.println("Interrupted");
+			System.exit(1);
+		} finally {
+			executor.shutdown();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		printReport(results, ticks);
+		System.out.println(String.format("%.1f s", seconds));
+	}
+
+	/**
+	 * One line per AI, the longest surviving first
+	 */
+	static void printReport(Map<Class<?>, List<MatchResult>> results, int ticks) {
+		List<Map.Entry<Class<?>, List<MatchResult>>> entries = new ArrayList<Map.Entry<Class<?>, List<MatchResult>>>(results.entrySet());
+		Collections.sort(entries, new Comparator<Map.Entry<Class<?>, List<MatchResult>>>() {
+			@Override
+			public int compare(Map.Entry<Class<?>, List<MatchResult>> a, Map.Entry<Class<?>, List<MatchResult>> b) {
+				return Double.compare(meanSurvival(b.getValue()), meanSurvival(a.getValue()));
+			}
+		});
+
+		System.out.println(String.format("%-30s %8s %14s %12s %12s %12s %14s", "AI", "matches", "mean survival", "extinctions", "mean peak", "mean max gen", "mean extinction"));
+		for (Map.Entry<Class<?>, List<MatchResult>> entry : entries) {
+			List<MatchResult> list = entry.getValue();
+			if (list.isEmpty()) {
+				System.out.println(String.format("%-30s %8d", entry.getKey().getName(), 0));
+				continue;
+			}
+			int extinctions = 0;
+			long extinctionTicks = 0;
+			long peaks = 0;
+			long generations = 0;
+			for (MatchResult r : list) {
+				if (r.extinctionTick >= 0) {
+					extinctions++;
+					extinctionTicks += r.extinctionTick;
+				}
+				peaks += r.peakPopulation;
+				generations += r.maxGeneration;
+			}
+			System.out.println(String.format("%-30s %8d %14.1f %12d %12.1f %12.1f %14s",
+					entry.getKey().getName(), list.size(), meanSurvival(list), extinctions,
+					(double) peaks / list.size(), (double) generations / list.size(),
+					extinctions == 0 ? "-" : String.format("%.1f", (double) extinctionTicks / extinctions)));
+		}
+	}
+
+	private static double meanSurvival(List<MatchResult> list) {
+		if (list.isEmpty()) {
+			return 0;
+		}
+		long total = 0;
+		for (MatchResult r : list) {
+			total += r.survivalTicks;
+		}
+		return (double) total / list.size();
+	}
+
+	/**
+	 * A world of a single AI (and predators, if any), run on a thread of the pool
+	 */
+	static final class Match implements Callable<MatchResult> {
+		private final Class<?> race;
+		private final boolean predators;
+		private final WorldConfiguration config;
+		private final int ticks;
+
+		Match(Class<?> race, boolean predators, WorldConfiguration config, int ticks) {
+			this.race = race;
+			this.predators = predators;
+			this.config = config;
+			this.ticks = ticks;
+		}
+
+		@Override
+		public MatchResult call() {
+			Simulator simulator = new Simulator(race, predators, config);
+			MatchResult result = new MatchResult(race, config.getSeed());
+			result.observe(simulator);
+			while (simulator.getTicksElapsed() < ticks && result.extinctionTick < 0) {
+				simulator.nextTick();
+				result.observe(simulator);
+			}
+			result.survivalTicks = result.extinctionTick >= 0 ? result.extinctionTick : simulator.getTicksElapsed();
+			return result;
+		}
+	}
+
+	static final class MatchResult {
+		final Class<?> race;
+		final long seed;
+		/**
+		 * Most animals of the AI alive at once
+		 */
+		int peakPopulation;
+		int maxGeneration;
+		/**
+		 * First tick without any animal of the AI alive, -1 if it survived the whole match
+		 */
+		int extinctionTick;
+		int survivalTicks;
+
+		MatchResult(Class<?> race, long seed) {
+			this.race = race;
+			this.seed = seed;
+			this.peakPopulation = 0;
+			this.maxGeneration = 0;
+			this.extinctionTick = -1;
+			this.survivalTicks = 0;
+		}
+
+		void observe(Simulator simulator) {
+			int alive = simulator.getPopulation(race);
+			for (Animal a : simulator.getAnimals(race)) {
+				if (a.isAlive()) {
+					maxGeneration = Math.max(maxGeneration, a.getGeneration());
+				}
+			}
+			peakPopulation = Math.max(peakPopulation, alive);
+			if (alive == 0 && extinctionTick < 0) {
+				extinctionTick = simulator.getTicksElapsed();
+			}
+		}
+	}
+}
@@ -1,7 +1,7 @@
 package model;
 
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
 import model.management.Animal;
 import model.management.Coordinate;
@@ -46,7 +46,7 @@ public class GuineaPig extends Animal {
 
 	private boolean sometimes() {
 		return (this.getSimulator().getTicksElapsed() + 
-				new Random().nextInt((int)(TIME_BEFORE_LOOKING_ELSEWHERE*0.2)))
+				getRandom().nextInt((int)(TIME_BEFORE_LOOKING_ELSEWHERE*0.2)))
 				% TIME_BEFORE_LOOKING_ELSEWHERE 
 				== 0;
 	}
@@ -87,7 +87,7 @@ public class GuineaPig extends Animal {
 	}
 
 	private void randomMoves() {
-		Random r = new Random();
+		SplittableRandom r = getRandom();
 		setDirX(r.nextBoolean() ? 1 : (r.nextBoolean() ? 0 : -1));
 		setDirY(r.nextBoolean() ? 1 : (r.nextBoolean() ? 0 : -1));
 	}
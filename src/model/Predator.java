@@ -1,7 +1,5 @@
 package model;
 
-import java.util.Random;
-
 import model.management.Animal;
 import model.management.DetectedAnimal;
 import model.management.Simulator;
@@ -15,11 +13,8 @@ public final class Predator extends Animal {
 
 	private DetectedAnimal target;
 
-	private Random r;
-
 	public Predator(int x, int y, Simulator s) throws IllegalArgumentException {
 		super(x, y, s);
-		r = new Random();
 		this.changeImage("predator.png");
 		this.improveAttack(Animal.ATTACK_IMPROVING_COST);// Improve once, with just enough points
 		this.improveDetectionDistance(getAdnPoints());   // Improve with all that's left
@@ -36,8 +31,8 @@ public final class Predator extends Animal {
 				|| 
 				this.getSimulator().getTicksElapsed() % TIME_BEFORE_LOOKING_ELSEWHERE == 0) {
 
-			setDirX(r.nextBoolean() ? 1 : (r.nextBoolean() ? 0 : -1));
-			setDirY(r.nextBoolean() ? 1 : (r.nextBoolean() ? 0 : -1));
+			setDirX(getRandom().nextBoolean() ? 1 : (getRandom().nextBoolean() ? 0 : -1));
+			setDirY(getRandom().nextBoolean() ? 1 : (getRandom().nextBoolean() ? 0 : -1));
 		}
 		target = null;
 	}
@@ -0,0 +1,141 @@
+package model.management;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Time spent in the code of animals (their {@link Animal#behave()} and onFooDetected methods), by species and by method,
+ * and how many times an animal went over its budget (see {@link WorldConfiguration#getAiBudgetNanos()}).
+ * With a budget, times are the CPU time of the thread running the animal, so that a worker being descheduled, while other species run for instance, isn't charged to the animal.
+ * Without one, or if the JVM can't measure the CPU time of threads, they are measured with System.nanoTime(), which is cheaper : see {@link #isCpuTime()}.
+ */
+public final class AiAccounting {
+	public enum Callback {
+		BEHAVE,
+		GRASS_DETECTED,
+		RIVER_DETECTED,
+		ANIMAL_DETECTED
+	}
+
+	private static final Callback CALLBACKS[] = Callback.values();
+
+	/**
+	 * Index of the overrun count in the arrays of {@link #species}, after the times then the call counts of every callback
+	 */
+	private static final int OVERRUNS = CALLBACKS.length * 2;
+
+	private final Map<Class<?>, long[]> species;
+	private final boolean cpuTime;
+
+	AiAccounting(boolean cpuTime) {
+		this.species = new LinkedHashMap<Class<?>, long[]>();
+		this.cpuTime = cpuTime;
+	}
+
+	/**
+	 * @return true if times are CPU times, false if they are wall-clock times
+	 */
+	public boolean isCpuTime() {
+		return cpuTime;
+	}
+
+	/**
+	 * Adds what a thread measured, and empties it
+	 */
+	synchronized void merge(Usage usage) {
+		for (Map.Entry<Class<?>, long[]> entry : usage.species.entrySet()) {
+			long total[] = species.get(entry.getKey());
+			if (total == null) {
+				total = new long[OVERRUNS + 1];
+				species.put(entry.getKey(), total);
+			}
+			long local[] = entry.getValue();
+			for (int i = 0 ; i < local.length ; i++) {
+				total[i] += local[i];
+				local[i] = 0;
+			}
+		}
+	}
+
+	/**
+	 * @return the species that ran at least once, in the order they first did
+	 */
+	public synchronized Class<?>[] getSpecies() {
+		return species.keySet().toArray(new Class<?>[species.size()]);
+	}
+
+	public synchronized long getNanos(Class<?> animalClass, Callback callback) {
+		long total[] = species.get(animalClass);
+		return total == null ? 0 : total[callback.ordinal()];
+	}
+
+	public synchronized long getCalls(Class<?> animalClass, Callback callback) {
+		long total[] = species.get(animalClass);
+		return total == null ? 0 : total[CALLBACKS.length + callback.ordinal()];
+	}
+
+	/**
+	 * @return how many times an animal of that species had its calls skipped for the rest of a tick
+	 */
+	public synchronized long getOverruns(Class<?> animalClass) {
+		long total[] = species.get(animalClass);
+		return total == null ? 0 : total[OVERRUNS];
+	}
+
+	public synchronized void reset() {
+		species.clear();
+	}
+
+	/**
+	 * One line per species : milliseconds spent (of CPU time if {@link #isCpuTime()}) and number of calls for each method, and overruns
+	 */
+	@Override
+	public synchronized String toString() {
+		StringBuilder res = new StringBuilder();
+		for (Map.Entry<Class<?>, long[]> entry : species.entrySet()) {
+			long total[] = entry.getValue();
+			res.append(entry.getKey().getName()).append(" :");
+			for (Callback c : CALLBACKS) {
+				res.append(String.format(" %s %.1f ms (%d calls),", c, total[c.ordinal()] / 1e6, total[CALLBACKS.length + c.ordinal()]));
+			}
+			res.append(' ').append(total[OVERRUNS]).append(" overruns").append(System.lineSeparator());
+		}
+		return res.toString();
+	}
+
+	/**
+	 * What a single thread measured since it was last merged, so that threads don't share anything while measuring
+	 */
+	static final class Usage {
+		private final Map<Class<?>, long[]> species = new IdentityHashMap<Class<?>, long[]>();
+
+		/**
+		 * Cache of the last species looked up, animals of a same species often following each other
+		 */
+		private Class<?> lastClass;
+		private long lastTotal[];
+
+		void add(Class<?> animalClass, Callback callback, long nanos) {
+			long total[] = totalOf(animalClass);
+			total[callback.ordinal()] += nanos;
+			total[CALLBACKS.length + callback.ordinal()]++;
+		}
+
+		void overrun(Class<?> animalClass) {
+			totalOf(animalClass)[OVERRUNS]++;
+		}
+
+		private long[] totalOf(Class<?> animalClass) {
+			if (animalClass != lastClass) {
+				lastTotal = species.get(animalClass);
+				if (lastTotal == null) {
+					lastTotal = new long[OVERRUNS + 1];
+					species.put(animalClass, lastTotal);
+				}
+				lastClass = animalClass;
+			}
+			return lastTotal;
+		}
+	}
+}
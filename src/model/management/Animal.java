@@ -3,12 +3,14 @@
  */
 package model.management;
 
-import java.awt.geom.Line2D;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Random;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashSet;
 import java.util.Set;
+import java.util.SplittableRandom;
 
 /**
  * Animals, either yours or enemies. Extend to create your animal.
@@ -22,6 +24,11 @@ public abstract class Animal implements Cloneable {
 
 	private Simulator simulator;
 
+	/**
+	 * Unique in the simulator, see {@link #getId()}
+	 */
+	private long id;
+
 	private boolean isDead;
 
 	private Coordinate pos;
@@ -68,6 +75,9 @@ public abstract class Animal implements Cloneable {
 	 */
 	private int ageOfDeath;
 
+	/**
+	 * What the animal tried to eat this tick, in the order it tried
+	 */
 	private Set<Animal> animalsToEatThisTick;
 	
 	private Set<Grass> grassesToEatThisTick;
@@ -76,6 +86,33 @@ public abstract class Animal implements Cloneable {
 	
 	private Animal animalToMateWithThisTick;
 
+	/**
+	 * Where the animal is in the {@link Simulator#getAllAnimals()} of its simulator, -1 if it isn't there
+	 */
+	private int slot;
+
+	/**
+	 * Where the animal is in the list of its species, see {@link Simulator#getAnimals(Class)}, -1 if it isn't there
+	 */
+	private int speciesSlot;
+
+	/**
+	 * Where the core state of the animal (position, direction, fullness, age, cooldowns and features) lives while it is in a data-oriented world,
+	 * see {@link WorldConfiguration#isDataOriented()}. Null otherwise, the state then being in the fields of the animal.
+	 */
+	private AnimalTable table;
+
+	/**
+	 * Stream of random numbers of this animal only, for tick randomTick. See {@link #getRandom()}
+	 */
+	private SplittableRandom random;
+	private int randomTick;
+
+	/**
+	 * Time spent in the code of the animal during tick {@link #aiTick}, see {@link WorldConfiguration#getAiBudgetNanos()}
+	 */
+	private long aiNanos;
+	private int aiTick;
 
 
 	final static public int TIME_TO_ROT = 200;
@@ -121,22 +158,27 @@ public abstract class Animal implements Cloneable {
 		this.setDirY(0);
 		this.ticksLeftBeforeNextMating = 0;
 		this.alreadyAttackedThisTick = false;
-		this.attack = new Feature(ATTACK_IMPROVING_COST, 0, this);
-		this.detectionDistance = new Feature(DETECTION_DISTANCE_IMPROVING_COST, DEFAULT_DETECTION_DISTANCE, this);
-		this.speed = new Feature(SPEED_IMPROVING_COST, DEFAULT_SPEED, this);
-		this.maxFullness = new Feature(MAX_FULLNESS_IMPROVING_COST, DEFAULT_MAX_FULLNESS, this);
-		this.pubertyAge = new Feature(PUBERTY_IMPROVING_COST, DEFAULT_PUBERTY_AGE, this);
+		this.attack = new Feature(ATTACK_IMPROVING_COST, 0, this, AnimalTable.ATTACK);
+		this.detectionDistance = new Feature(DETECTION_DISTANCE_IMPROVING_COST, DEFAULT_DETECTION_DISTANCE, this, AnimalTable.DETECTION_DISTANCE);
+		this.speed = new Feature(SPEED_IMPROVING_COST, DEFAULT_SPEED, this, AnimalTable.SPEED);
+		this.maxFullness = new Feature(MAX_FULLNESS_IMPROVING_COST, DEFAULT_MAX_FULLNESS, this, AnimalTable.MAX_FULLNESS);
+		this.pubertyAge = new Feature(PUBERTY_IMPROVING_COST, DEFAULT_PUBERTY_AGE, this, AnimalTable.PUBERTY_AGE);
 		this.pos = new Coordinate(x, y);
 		this.age = this.pubertyAge.getValue();
 		this.adnPoints = STARTING_ADN_POINTS;
 		this.herbivore = false;
 		this.carnivore = false;
 		this.simulator = s;
-		this.fullness = (new Random().nextInt(this.maxFullness.getValue()/2) + this.maxFullness.getValue()/2);
+		this.id = s.nextAnimalId();
+		this.random = null;
+		this.fullness = (getRandom().nextInt(this.maxFullness.getValue()/2) + this.maxFullness.getValue()/2);
 		this.generation = 1;
 		this.ageOfDeath = -1;
-		this.animalsToEatThisTick = new HashSet<Animal>();
-		this.grassesToEatThisTick = new HashSet<Grass>();
+		this.animalsToEatThisTick = new LinkedHashSet<Animal>();
+		this.grassesToEatThisTick = new LinkedHashSet<Grass>();
+		this.slot = -1;
+		this.speciesSlot = -1;
+		this.table = null;
 
 		this.chooseInitialDiet();
 	}
@@ -158,11 +200,12 @@ public abstract class Animal implements Cloneable {
 	}
 
 	synchronized final void attack(Animal a) {
-		if (!this.alreadyAttackedThisTick && Simulator.euclidianDistance(a.getPosX(), a.getPosY(), this.getPosX(), this.getPosY()) <= MAX_DISTANCE_TO_ATTACK &&
+		if (!this.hasAlreadyAttackedThisTick() && Simulator.euclidianDistance(a.getPosX(), a.getPosY(), this.getPosX(), this.getPosY()) <= MAX_DISTANCE_TO_ATTACK &&
 				this.isAlive() && a.isAlive()) {
-			this.alreadyAttackedThisTick = true;
+			this.setAlreadyAttackedThisTick(true);
 			if (this.attack.getValue() > 0) {
 				try {
+					simulator.recordEvent(EventJournal.EventType.ATTACK, this.id, a.id, -1, a.getPosX(), a.getPosY(), this.attack.getValue());
 					a.onAttacked(new DetectedAnimal(this), this.attack.getValue());
 					a.die();
 				} catch (IllegalStateException e) {
@@ -182,29 +225,41 @@ public abstract class Animal implements Cloneable {
 	 */
 	synchronized final void mate(Animal mate) {
 		if (this.isAlive() && mate.isAlive()) {
-			if (this.age >= this.pubertyAge.getValue() && mate.age >= mate.pubertyAge.getValue()) {
-				if (this.ticksLeftBeforeNextMating == 0 && mate.ticksLeftBeforeNextMating == 0) {
-					if (Simulator.euclidianDistance(mate.pos.getX(), mate.pos.getY(), this.pos.getX(), this.pos.getY()) <= MAX_DISTANCE_TO_MATE) {
+			if (this.getAge() >= this.pubertyAge.getValue() && mate.getAge() >= mate.pubertyAge.getValue()) {
+				if (this.getTicksLeftBeforeNextMating() == 0 && mate.getTicksLeftBeforeNextMating() == 0) {
+					if (Simulator.euclidianDistance(mate.getPosX(), mate.getPosY(), this.getPosX(), this.getPosY()) <= MAX_DISTANCE_TO_MATE) {
 						if (this.sameSpeciesAs(mate)) {
-							this.ticksLeftBeforeNextMating = DEFAULT_TIME_BETWEEN_MATING;
-							mate.ticksLeftBeforeNextMating = DEFAULT_TIME_BETWEEN_MATING;
+							this.setTicksLeftBeforeNextMating(DEFAULT_TIME_BETWEEN_MATING);
+							mate.setTicksLeftBeforeNextMating(DEFAULT_TIME_BETWEEN_MATING);
 
 							try {
-								Animal baby = (Animal) ((this.getGeneration() > mate.getGeneration()) ? this.clone() : mate.clone()); // The most evolved parent is considered the basis
+								Animal parent = (this.getGeneration() > mate.getGeneration()) ? this : mate; // The most evolved parent is considered the basis
+								Animal baby = (Animal) parent.clone();
+								baby.slot = -1;
+								baby.speciesSlot = -1;
+								baby.id = simulator.nextAnimalId();
+								baby.random = null;
+								if (baby.table != null) {
+									baby.table = null;
+									baby.copyStateFrom(parent.table, parent.slot);
+								}
 
 								baby.pos = new Coordinate(
-										this.pos.getX() + mate.pos.getX()/2, 
-										this.pos.getY() + mate.pos.getY()/2);//TODO If pregnancy is ever done : when delivering the baby after carrying, should be next to mom and nothing to do with the dad
+										this.getPosX() + mate.getPosX()/2, 
+										this.getPosY() + mate.getPosY()/2);//TODO If pregnancy is ever done : when delivering the baby after carrying, should be next to mom and nothing to do with the dad
 								baby.age = 0;
 								baby.adnPoints = this.getAdnPoints() + mate.getAdnPoints() + ADN_GAIN_TO_NEWBORN;
-								baby.fullness = Math.max(this.fullness, mate.fullness);
+								baby.fullness = Math.max(this.getFullness(), mate.getFullness());
 								baby.generation++;
 								baby.speed = baby.speed.getClone(baby);
 								baby.pubertyAge = baby.pubertyAge.getClone(baby);
 								baby.maxFullness = baby.maxFullness.getClone(baby);
 								baby.attack = baby.attack.getClone(baby);
 								baby.detectionDistance = baby.detectionDistance.getClone(baby);
+								baby.animalsToEatThisTick = new LinkedHashSet<Animal>();
+								baby.grassesToEatThisTick = new LinkedHashSet<Grass>();
 								baby.onBirth(this, mate);
+								simulator.recordEvent(EventJournal.EventType.BIRTH, baby.id, this.id, mate.id, baby.getPosX(), baby.getPosY(), baby.generation);
 
 								simulator.addBabyToWorld(baby);
 							} catch (CloneNotSupportedException e) {
@@ -272,37 +327,49 @@ public abstract class Animal implements Cloneable {
 	}
 
 	final void nextTick() {
-		this.alreadyAttackedThisTick = false;
-		if (this.ticksLeftBeforeNextMating > 0) {
-			this.ticksLeftBeforeNextMating--;
+		this.setAlreadyAttackedThisTick(false);
+		if (this.getTicksLeftBeforeNextMating() > 0) {
+			this.setTicksLeftBeforeNextMating(this.getTicksLeftBeforeNextMating() - 1);
 		}
-		this.age++;
-		this.animalsToEatThisTick.clear();
-		this.grassesToEatThisTick.clear();
-		if (this.isDead() && this.age - this.ageOfDeath >= TIME_TO_ROT) {
+		this.setAge(this.getAge() + 1);
+		this.clearIntents();
+		if (this.isDead() && this.getAge() - this.getAgeOfDeath() >= TIME_TO_ROT) {
 			simulator.removeAnimalFromWorld(this);
 		}
 	}
 
+	final void clearIntents() {
+		this.animalsToEatThisTick.clear();
+		this.grassesToEatThisTick.clear();
+	}
+
 	/**
 	 * Called every tick. Must make the animal move or whatever.
 	 */
 	public abstract void behave();
 
 	public final int getPosX() {
-		return pos.getX();
+		return table != null ? table.posX[slot] : pos.getX();
 	}
 
 	synchronized private final void setPosX(int posX) {
-		this.pos.setX(posX);
+		if (table != null) {
+			table.posX[slot] = posX;
+		} else {
+			this.pos.setX(posX);
+		}
 	}
 
 	public final int getPosY() {
-		return pos.getY();
+		return table != null ? table.posY[slot] : pos.getY();
 	}
 
 	private final void setPosY(int posY) {
-		this.pos.setY(posY);
+		if (table != null) {
+			table.posY[slot] = posY;
+		} else {
+			this.pos.setY(posY);
+		}
 	}
 
 	public final int getSpeedValue() {
@@ -310,37 +377,53 @@ public abstract class Animal implements Cloneable {
 	}
 
 	public final double getDirX() {
-		return dirX;
+		return table != null ? table.dirX[slot] : dirX;
 	}
 
 	public final void setDirX(double dirX) {
 		if (dirX >= -1. && dirX <= 1.) {
-			this.dirX = dirX;			
+			if (table != null) {
+				table.dirX[slot] = dirX;
+			} else {
+				this.dirX = dirX;
+			}
 		} else {
 			throw new IllegalArgumentException(dirX + " is not normalized");
 		}
 	}
 
 	public final double getDirY() {
-		return dirY;
+		return table != null ? table.dirY[slot] : dirY;
 	}
 
 	public final void setDirY(double dirY) {
 		if (dirY >= -1 && dirY <= 1) {
-			this.dirY = dirY;			
+			if (table != null) {
+				table.dirY[slot] = dirY;
+			} else {
+				this.dirY = dirY;
+			}
 		} else {
 			throw new IllegalArgumentException(dirY + " is not normalized");
 		}
 	}
 
 	public final int getFullness() {
-		return fullness;
+		return table != null ? table.fullness[slot] : fullness;
+	}
+
+	private final void setFullness(int fullness) {
+		if (table != null) {
+			table.fullness[slot] = fullness;
+		} else {
+			this.fullness = fullness;
+		}
 	}
 
 	final void gettingHungry() {
 		if (this.isAlive()) {
-			if (this.fullness > 0) {
-				this.fullness--;
+			if (this.getFullness() > 0) {
+				this.setFullness(this.getFullness() - 1);
 			} else {
 				this.die();
 			}
@@ -348,29 +431,29 @@ public abstract class Animal implements Cloneable {
 	}
 
 	final void eatFrom(Grass f) {
-		if (this.isAlive() && this.isHerbivore() && this.fullness < this.maxFullness.getValue()) {
-			this.fullness += f.beingEaten();
-			if (this.fullness > this.maxFullness.getValue()) {
-				this.fullness = this.maxFullness.getValue();
-			}	
+		if (this.isAlive() && this.isHerbivore() && this.getFullness() < this.maxFullness.getValue()) {
+			int fullnessBefore = this.getFullness();
+			this.setFullness(Math.min(this.getFullness() + f.beingEaten(), this.maxFullness.getValue()));
+			simulator.recordEvent(EventJournal.EventType.EAT_GRASS, this.id, -1, -1, f.getPosX(), f.getPosY(), this.getFullness() - fullnessBefore);
 		}
 	}
 
 	final void eatFrom(Animal a) {
 		if (this.isAlive() && a.isDead() && this.isCarnivore()) {
-			this.fullness += DEFAULT_FULLNESS_PER_CARNIVOROUS_BITE;
-			if (this.fullness > this.maxFullness.getValue()) {
-				this.fullness = this.maxFullness.getValue();
-			}	
+			int fullnessBefore = this.getFullness();
+			this.setFullness(Math.min(this.getFullness() + DEFAULT_FULLNESS_PER_CARNIVOROUS_BITE, this.maxFullness.getValue()));
+			simulator.recordEvent(EventJournal.EventType.EAT_ANIMAL, this.id, a.id, -1, a.getPosX(), a.getPosY(), this.getFullness() - fullnessBefore);
 		}
 	}
 
-	private final void die() throws IllegalStateException {
-		if (this.isDead) {
+	final void die() throws IllegalStateException {
+		if (this.isDead()) {
 			throw new IllegalStateException("What is dead can't die :/");
 		} else {
-			this.isDead = true;
-			this.ageOfDeath = this.age;
+			this.setDead(true);
+			this.setAgeOfDeath(this.getAge());
+			simulator.recordEvent(EventJournal.EventType.DEATH, this.id, -1, -1, this.getPosX(), this.getPosY(), this.getAge());
+			simulator.animalDied(this);
 			this.onDeath();
 		}
 	}
@@ -379,28 +462,12 @@ public abstract class Animal implements Cloneable {
 	 * Moves the animal, if alive, according to previously set directions and speed.
 	 * Will not go under 0, above given integers or through rivers
 	 */
-	final void move(final int MAX_X, final int MAX_Y, List<River> rivers) {
+	final void move(final int MAX_X, final int MAX_Y, RiverIndex rivers) {
 		if (this.isAlive()) {
 			int newX = getPosX() + (int)Math.ceil(getSpeedValue() * getDirX());
 			int newY = getPosY() + (int)Math.ceil(getSpeedValue() * getDirY());
 
-			boolean willCrossRiver = false;
-			Line2D animalLine = new Line2D.Float(getPosX(), getPosY(), newX, newY);
-			for (River r : rivers) {
-				if (willCrossRiver) {
-					break;
-				}
-				Coordinate nodes[] = r.getNodes();
-				for (int i = 0 ; i < nodes.length-1 ; i++) {
-					Coordinate node1 = nodes[i];
-					Coordinate node2 = nodes[i+1];
-					Line2D currentRiverLine = new Line2D.Float(node1.getX(), node1.getY(), node2.getX(), node2.getY());
-					if (animalLine.intersectsLine(currentRiverLine)) {
-						willCrossRiver = true;
-						break;
-					}
-				}
-			}
+			boolean willCrossRiver = rivers.crosses(getPosX(), getPosY(), newX, newY);
 			if (!willCrossRiver && newX >= 0 && newX <= MAX_X) {
 				setPosX(newX);
 			}
@@ -425,7 +492,7 @@ public abstract class Animal implements Cloneable {
 	}
 
 	public final boolean isDead() {
-		return isDead;
+		return table != null ? table.dead[slot] : isDead;
 	}
 
 	public final boolean isAlive() {
@@ -433,7 +500,11 @@ public abstract class Animal implements Cloneable {
 	}
 
 	private final void setDead(boolean isDead) {
-		this.isDead = isDead;
+		if (table != null) {
+			table.dead[slot] = isDead;
+		} else {
+			this.isDead = isDead;
+		}
 	}
 
 	public final int getDetectionDistanceValue() {
@@ -443,7 +514,8 @@ public abstract class Animal implements Cloneable {
 	/**
 	 * Called every tick, for every grass near the animal (near means less than {@link Animal#detectionDistance})
 	 * Must be overridden to be used
-	 * @param g the grass detected, as it was when detected. This is not the real reference and won't be updated. Think 'snapshot'
+	 * @param g the grass detected, as it was when detected. This is not the real reference and won't be updated. Think 'snapshot'.
+	 * With pooled perception, it is only valid until the end of the tick : keep {@link DetectedGrass#copy()} instead
 	 */
 	public void onGrassDetected(DetectedGrass g) {
 	}
@@ -451,7 +523,8 @@ public abstract class Animal implements Cloneable {
 	/**
 	 * Called every tick, for every other animal near the animal (near means less than {@link Animal#detectionDistance})
 	 * Must be overridden to be used
-	 * @param a the animal detected, as it was when detected. This is not the real reference and won't be updated. Think 'snapshot'
+	 * @param a the animal detected, as it was when detected. This is not the real reference and won't be updated. Think 'snapshot'.
+	 * With pooled perception, it is only valid until the end of the tick : keep {@link DetectedAnimal#copy()} instead
 	 */
 	public void onAnimalDetected(DetectedAnimal a) {
 	}
@@ -465,6 +538,20 @@ public abstract class Animal implements Cloneable {
 	public void onRiverDetected(Coordinate a, Coordinate b) {
 	}
 
+	/**
+	 * Can be overridden to save what the AI remembers (targets, known places...) in a {@link WorldCheckpoint}.
+	 * Whatever is written here is given back to {@link #readMemory(DataInput)} when the checkpoint is loaded.
+	 */
+	protected void writeMemory(DataOutput out) throws IOException {
+	}
+
+	/**
+	 * Can be overridden to get back what {@link #writeMemory(DataOutput)} saved.
+	 * Called on an animal freshly created with the (int, int, Simulator) constructor, once its own state is restored.
+	 */
+	protected void readMemory(DataInput in) throws IOException {
+	}
+
 	/**
 	 * Can be overridden to do one last thing when the animal dies
 	 */
@@ -537,6 +624,28 @@ public abstract class Animal implements Cloneable {
 		return maxFullness.getValue();
 	}
 
+	/**
+	 * Random numbers to use in the AI of the animal instead of creating a {@link java.util.Random}.
+	 * Each animal has its own stream, all derived from the seed of the world (see {@link WorldConfiguration#getSeed()}),
+	 * so that the same seed gives the same run, whether the animals behave one after the other or in parallel.
+	 * The stream changes every tick, to be the same in a world restored from a {@link WorldCheckpoint} : call this again rather than keeping it.
+	 */
+	protected final SplittableRandom getRandom() {
+		int tick = simulator.getTicksElapsed();
+		if (random == null || randomTick != tick) {
+			random = simulator.newRandom(id, tick);
+			randomTick = tick;
+		}
+		return random;
+	}
+
+	/**
+	 * @return a number identifying the animal among all the animals that ever lived in its world, see {@link EventJournal}
+	 */
+	public final long getId() {
+		return id;
+	}
+
 	public final Simulator getSimulator() {
 		return simulator;
 	}
@@ -610,6 +719,221 @@ public abstract class Animal implements Cloneable {
 	}
 
 	int getAgeOfDeath() {
-		return ageOfDeath;
+		return table != null ? table.ageOfDeath[slot] : ageOfDeath;
+	}
+
+	private void setAgeOfDeath(int ageOfDeath) {
+		if (table != null) {
+			table.ageOfDeath[slot] = ageOfDeath;
+		} else {
+			this.ageOfDeath = ageOfDeath;
+		}
+	}
+
+	int getAge() {
+		return table != null ? table.age[slot] : age;
+	}
+
+	private void setAge(int age) {
+		if (table != null) {
+			table.age[slot] = age;
+		} else {
+			this.age = age;
+		}
+	}
+
+	private int getTicksLeftBeforeNextMating() {
+		return table != null ? table.ticksLeftBeforeNextMating[slot] : ticksLeftBeforeNextMating;
+	}
+
+	private void setTicksLeftBeforeNextMating(int ticksLeftBeforeNextMating) {
+		if (table != null) {
+			table.ticksLeftBeforeNextMating[slot] = ticksLeftBeforeNextMating;
+		} else {
+			this.ticksLeftBeforeNextMating = ticksLeftBeforeNextMating;
+		}
+	}
+
+	private boolean hasAlreadyAttackedThisTick() {
+		return table != null ? table.alreadyAttackedThisTick[slot] : alreadyAttackedThisTick;
+	}
+
+	private void setAlreadyAttackedThisTick(boolean alreadyAttackedThisTick) {
+		if (table != null) {
+			table.alreadyAttackedThisTick[slot] = alreadyAttackedThisTick;
+		} else {
+			this.alreadyAttackedThisTick = alreadyAttackedThisTick;
+		}
+	}
+
+	/**
+	 * @return the time spent in the code of the animal during the given tick, if measured
+	 */
+	long getAiNanos(int tick) {
+		return aiTick == tick ? aiNanos : 0;
+	}
+
+	/**
+	 * Adds to the time spent in the code of the animal during the given tick
+	 * @return the total for that tick
+	 */
+	long chargeAiTime(int tick, long nanos) {
+		if (aiTick != tick) {
+			aiTick = tick;
+			aiNanos = 0;
+		}
+		aiNanos += nanos;
+		return aiNanos;
+	}
+
+	AnimalTable getTable() {
+		return table;
+	}
+
+	boolean isInWorld() {
+		return slot >= 0;
+	}
+
+	int getSlot() {
+		return slot;
+	}
+
+	/**
+	 * Also moves the core state of the animal in or out of the {@link AnimalTable} of its world, if it has one
+	 */
+	void setSlot(int slot) {
+		AnimalTable worldTable = simulator.getAnimalTable();
+		if (worldTable != null) {
+			if (this.slot < 0 && slot >= 0) {
+				worldTable.ensureCapacity(slot + 1);
+				copyStateTo(worldTable, slot);
+				this.table = worldTable;
+			} else if (this.slot >= 0 && slot < 0) {
+				this.table = null;
+				copyStateFrom(worldTable, this.slot);
+				worldTable.animals[this.slot] = null;
+			} else if (this.slot != slot) {
+				worldTable.moveRow(this.slot, slot);
+			}
+		}
+		this.slot = slot;
+	}
+
+	int getSpeciesSlot() {
+		return speciesSlot;
+	}
+
+	void setSpeciesSlot(int speciesSlot) {
+		this.speciesSlot = speciesSlot;
+	}
+
+	private void copyStateTo(AnimalTable t, int row) {
+		t.animals[row] = this;
+		t.posX[row] = pos.getX();
+		t.posY[row] = pos.getY();
+		t.dirX[row] = dirX;
+		t.dirY[row] = dirY;
+		t.fullness[row] = fullness;
+		t.age[row] = age;
+		t.ageOfDeath[row] = ageOfDeath;
+		t.ticksLeftBeforeNextMating[row] = ticksLeftBeforeNextMating;
+		t.dead[row] = isDead;
+		t.alreadyAttackedThisTick[row] = alreadyAttackedThisTick;
+		speed.copyValueTo(t, row);
+		pubertyAge.copyValueTo(t, row);
+		maxFullness.copyValueTo(t, row);
+		attack.copyValueTo(t, row);
+		detectionDistance.copyValueTo(t, row);
+	}
+
+	/**
+	 * Writes what {@link #readState(ByteBuffer)} needs to restore the animal, see {@link WorldCheckpoint}
+	 */
+	void writeState(ByteBuffer out) {
+		out.putInt(getPosX());
+		out.putInt(getPosY());
+		out.putDouble(getDirX());
+		out.putDouble(getDirY());
+		out.putInt(getFullness());
+		out.putInt(getAge());
+		out.putInt(getAgeOfDeath());
+		out.putInt(getTicksLeftBeforeNextMating());
+		out.putInt(adnPoints);
+		out.putInt(generation);
+		out.put((byte) ((isDead() ? 1 : 0) | (hasAlreadyAttackedThisTick() ? 2 : 0) | (herbivore ? 4 : 0) | (carnivore ? 8 : 0)));
+		for (Feature f : new Feature[] {speed, pubertyAge, maxFullness, attack, detectionDistance}) {
+			out.putInt(f.getValue());
+			out.putInt(f.getLeftoverPoints());
+		}
+	}
+
+	/**
+	 * Overwrites the state of this animal, which must not be in a world yet, with what {@link #writeState(ByteBuffer)} wrote
+	 */
+	void readState(ByteBuffer in) {
+		pos = new Coordinate(in.getInt(), in.getInt());
+		dirX = in.getDouble();
+		dirY = in.getDouble();
+		fullness = in.getInt();
+		age = in.getInt();
+		ageOfDeath = in.getInt();
+		ticksLeftBeforeNextMating = in.getInt();
+		adnPoints = in.getInt();
+		generation = in.getInt();
+		byte flags = in.get();
+		isDead = (flags & 1) != 0;
+		alreadyAttackedThisTick = (flags & 2) != 0;
+		herbivore = (flags & 4) != 0;
+		carnivore = (flags & 8) != 0;
+		for (Feature f : new Feature[] {speed, pubertyAge, maxFullness, attack, detectionDistance}) {
+			f.restore(in.getInt(), in.getInt());
+		}
+	}
+
+	/**
+	 * See {@link WorldCheckpoint}. Images aren't looked for on the disk again.
+	 */
+	void restoreImages(String tilePath, String deadTilePath) {
+		this.tilePath = tilePath;
+		this.deadTilePath = deadTilePath;
+	}
+
+	/**
+	 * See {@link WorldCheckpoint}
+	 */
+	void restoreId(long id) {
+		this.id = id;
+		this.random = null;
+	}
+
+	/**
+	 * See {@link WorldCheckpoint}
+	 */
+	void restoreTargets(Animal animalToAttack, Animal animalToMateWith) {
+		this.animalToAttackThisTick = animalToAttack;
+		this.animalToMateWithThisTick = animalToMateWith;
+	}
+
+	/**
+	 * Puts the state of a row in the fields of this animal, which must not be backed by a table anymore
+	 */
+	private void copyStateFrom(AnimalTable t, int row) {
+		pos = new Coordinate(t.posX[row], t.posY[row]);
+		dirX = t.dirX[row];
+		dirY = t.dirY[row];
+		fullness = t.fullness[row];
+		age = t.age[row];
+		ageOfDeath = t.ageOfDeath[row];
+		ticksLeftBeforeNextMating = t.ticksLeftBeforeNextMating[row];
+		isDead = t.dead[row];
+		alreadyAttackedThisTick = t.alreadyAttackedThisTick[row];
+		// Features of a clone still point to the features of the original, which will copy their value themselves
+		if (speed.getAnimal() == this) {
+			speed.copyValueFrom(t, row);
+			pubertyAge.copyValueFrom(t, row);
+			maxFullness.copyValueFrom(t, row);
+			attack.copyValueFrom(t, row);
+			detectionDistance.copyValueFrom(t, row);
+		}
 	}
 }
@@ -0,0 +1,128 @@
+package model.management;
+
+import java.util.Arrays;
+
+/**
+ * Core state of the animals of a data-oriented world (see {@link WorldConfiguration#isDataOriented()}), one primitive array per attribute.
+ * Row i holds the animal in slot i of {@link Simulator#getAllAnimals()}, so that the bulk phases of a tick are tight loops over arrays
+ * instead of going from animal to coordinate to feature objects.
+ * Animals read and write their own row through their usual getters and setters.
+ */
+final class AnimalTable {
+	/** Columns of {@link #features} */
+	static final int SPEED = 0;
+	static final int PUBERTY_AGE = 1;
+	static final int MAX_FULLNESS = 2;
+	static final int ATTACK = 3;
+	static final int DETECTION_DISTANCE = 4;
+	static final int NB_FEATURES = 5;
+
+	Animal animals[];
+	int posX[];
+	int posY[];
+	double dirX[];
+	double dirY[];
+	int fullness[];
+	int age[];
+	int ageOfDeath[];
+	int ticksLeftBeforeNextMating[];
+	boolean dead[];
+	boolean alreadyAttackedThisTick[];
+	final int features[][];
+
+	AnimalTable() {
+		features = new int[NB_FEATURES][];
+		resize(64);
+	}
+
+	void ensureCapacity(int rows) {
+		if (rows > animals.length) {
+			resize(Math.max(rows, animals.length * 2));
+		}
+	}
+
+	private void resize(int rows) {
+		animals = animals == null ? new Animal[rows] : Arrays.copyOf(animals, rows);
+		posX = posX == null ? new int[rows] : Arrays.copyOf(posX, rows);
+		posY = posY == null ? new int[rows] : Arrays.copyOf(posY, rows);
+		dirX = dirX == null ? new double[rows] : Arrays.copyOf(dirX, rows);
+		dirY = dirY == null ? new double[rows] : Arrays.copyOf(dirY, rows);
+		fullness = fullness == null ? new int[rows] : Arrays.copyOf(fullness, rows);
+		age = age == null ? new int[rows] : Arrays.copyOf(age, rows);
+		ageOfDeath = ageOfDeath == null ? new int[rows] : Arrays.copyOf(ageOfDeath, rows);
+		ticksLeftBeforeNextMating = ticksLeftBeforeNextMating == null ? new int[rows] : Arrays.copyOf(ticksLeftBeforeNextMating, rows);
+		dead = dead == null ? new boolean[rows] : Arrays.copyOf(dead, rows);
+		alreadyAttackedThisTick = alreadyAttackedThisTick == null ? new boolean[rows] : Arrays.copyOf(alreadyAttackedThisTick, rows);
+		for (int f = 0 ; f < NB_FEATURES ; f++) {
+			features[f] = features[f] == null ? new int[rows] : Arrays.copyOf(features[f], rows);
+		}
+	}
+
+	/**
+	 * Used when the animal of row from changes slot
+	 */
+	void moveRow(int from, int to) {
+		animals[to] = animals[from];
+		animals[from] = null;
+		posX[to] = posX[from];
+		posY[to] = posY[from];
+		dirX[to] = dirX[from];
+		dirY[to] = dirY[from];
+		fullness[to] = fullness[from];
+		age[to] = age[from];
+		ageOfDeath[to] = ageOfDeath[from];
+		ticksLeftBeforeNextMating[to] = ticksLeftBeforeNextMating[from];
+		dead[to] = dead[from];
+		alreadyAttackedThisTick[to] = alreadyAttackedThisTick[from];
+		for (int f = 0 ; f < NB_FEATURES ; f++) {
+			features[f][to] = features[f][from];
+		}
+	}
+
+	/**
+	 * Same as {@link Animal#move(int, int, RiverIndex)} then {@link Animal#gettingHungry()} for the animals of the first rows
+	 */
+	void moveAndGetHungry(int nbRows, final int MAX_X, final int MAX_Y, RiverIndex rivers) {
+		final int speed[] = features[SPEED];
+		for (int i = 0 ; i < nbRows ; i++) {
+			if (animals[i] != null && !dead[i]) {
+				int newX = posX[i] + (int)Math.ceil(speed[i] * dirX[i]);
+				int newY = posY[i] + (int)Math.ceil(speed[i] * dirY[i]);
+
+				boolean willCrossRiver = rivers.crosses(posX[i], posY[i], newX, newY);
+				if (!willCrossRiver && newX >= 0 && newX <= MAX_X) {
+					posX[i] = newX;
+				}
+				if (!willCrossRiver && newY >= 0 && newY <= MAX_Y) {
+					posY[i] = newY;
+				}
+
+				if (fullness[i] > 0) {
+					fullness[i]--;
+				} else {
+					animals[i].die();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Same as {@link Animal#nextTick()} for the animals of the first rows
+	 */
+	void nextTick(int nbRows) {
+		for (int i = 0 ; i < nbRows ; i++) {
+			Animal a = animals[i];
+			if (a != null) {
+				alreadyAttackedThisTick[i] = false;
+				if (ticksLeftBeforeNextMating[i] > 0) {
+					ticksLeftBeforeNextMating[i]--;
+				}
+				age[i]++;
+				a.clearIntents();
+				if (dead[i] && age[i] - ageOfDeath[i] >= Animal.TIME_TO_ROT) {
+					a.getSimulator().removeAnimalFromWorld(a);
+				}
+			}
+		}
+	}
+}
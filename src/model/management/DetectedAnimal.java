@@ -4,22 +4,38 @@ package model.management;
  * The attributes that can be seen of an animal when detected.
  * Ex : You may see where it is and what species it's from, but not if it's hungry or herbivore.
  * Think "snapshot".
+ * In a world with pooled perception (see {@link WorldConfiguration#isPooledPerception()}), snapshots are reused from one tick to the next :
+ * use {@link #copy()} to keep one longer than the tick it was given in.
  * May also contain false information if TODO the animal is faking something (ex : death)
  */
 public final class DetectedAnimal {
 	private Class<?> clazz;
 	
-	private final int posX;
-	private final int posY;
+	private int posX;
+	private int posY;
 	
-	private final boolean dead;	
+	private boolean dead;	
 	
-	private final int ageOfDeath;
+	private int ageOfDeath;
 	
-	private final Animal actualAnimal;
+	private Animal actualAnimal;
 	
 	DetectedAnimal(Animal actualReference) {
 		super();
+		update(actualReference);
+	}
+
+	/**
+	 * Empty snapshot, see {@link PerceptionArena}
+	 */
+	DetectedAnimal() {
+		super();
+	}
+
+	/**
+	 * Makes this a snapshot of the animal as it is now
+	 */
+	void update(Animal actualReference) {
 		this.actualAnimal = actualReference;
 		this.clazz = actualReference.getClass();
 		this.posX = actualReference.getPosX();
@@ -28,6 +44,20 @@ public final class DetectedAnimal {
 		this.ageOfDeath = actualReference.getAgeOfDeath();
 	}
 
+	/**
+	 * @return a snapshot with the same information, which will never be reused by the simulator
+	 */
+	public DetectedAnimal copy() {
+		DetectedAnimal copy = new DetectedAnimal();
+		copy.actualAnimal = actualAnimal;
+		copy.clazz = clazz;
+		copy.posX = posX;
+		copy.posY = posY;
+		copy.dead = dead;
+		copy.ageOfDeath = ageOfDeath;
+		return copy;
+	}
+
 	public String getClassName() {
 		return clazz.getName();
 	}
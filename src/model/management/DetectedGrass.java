@@ -5,19 +5,28 @@ package model.management;
  * The attributes that can be seen of a {@link Grass} when detected.
  * Ex : You may see where it is and how much there's left
  * Think "snapshot".
+ * In a world with pooled perception (see {@link WorldConfiguration#isPooledPerception()}), snapshots are reused from one tick to the next :
+ * use {@link #copy()} to keep one longer than the tick it was given in.
  * May also contain hidden or false information. Ex : TODO some grass is poisonous, which sickens the animals and also makes them unable to recognize it as poisonous
  */
 public class DetectedGrass {
-	private final int posX;
-	private final int posY;
+	private int posX;
+	private int posY;
 	
 	private Grass actualGrass;
 	
-	private final int amount;
+	private int amount;
 	
 	public DetectedGrass(Grass g) {
 		this(g.getPosX(), g.getPosY(), g.getAmount(), g);
 	}
+
+	/**
+	 * Empty snapshot, see {@link PerceptionArena}
+	 */
+	DetectedGrass() {
+		super();
+	}
 	
 	private DetectedGrass(int posX, int posY, int amount, Grass g) {
 		super();
@@ -27,6 +36,23 @@ public class DetectedGrass {
 		this.actualGrass = g;
 	}
 
+	/**
+	 * Makes this a snapshot of the grass as it is now
+	 */
+	void update(Grass g) {
+		this.posX = g.getPosX();
+		this.posY = g.getPosY();
+		this.amount = g.getAmount();
+		this.actualGrass = g;
+	}
+
+	/**
+	 * @return a snapshot with the same information, which will never be reused by the simulator
+	 */
+	public DetectedGrass copy() {
+		return new DetectedGrass(posX, posY, amount, actualGrass);
+	}
+
 	public int getPosX() {
 		return posX;
 	}
@@ -0,0 +1,173 @@
+package model.management;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Entities of a world, each one in its own slot of an array.
+ * Removing an entity only empties its slot (tombstone), and {@link #compact()} gets rid of empty slots once in a while,
+ * keeping entities in the order they were added.
+ * Entities know their slot, through {@link Slots}, so that removing them and checking if they are here doesn't need any search.
+ */
+final class EntityStore<E> extends AbstractCollection<E> {
+	/**
+	 * Where entities remember their slot
+	 */
+	interface Slots<E> {
+		/**
+		 * @return the slot of the entity, or -1 if it isn't in a store
+		 */
+		int getSlot(E entity);
+
+		void setSlot(E entity, int slot);
+	}
+
+	/**
+	 * What entities are, so that other objects are never looked up in {@link #slots}
+	 */
+	private final Class<E> type;
+	private final Slots<E> slots;
+
+	private Object entities[];
+
+	/**
+	 * Number of used slots, including empty ones
+	 */
+	private int end;
+
+	/**
+	 * Number of entities
+	 */
+	private int size;
+
+	EntityStore(Class<E> type, Slots<E> slots) {
+		this.type = type;
+		this.slots = slots;
+		this.entities = new Object[16];
+		this.end = 0;
+		this.size = 0;
+	}
+
+	@Override
+	public boolean add(E entity) {
+		if (slots.getSlot(entity) >= 0) {
+			throw new IllegalStateException(entity + " is already in a world");
+		}
+		if (end == entities.length) {
+			entities = Arrays.copyOf(entities, entities.length * 2);
+		}
+		entities[end] = entity;
+		slots.setSlot(entity, end);
+		end++;
+		size++;
+		return true;
+	}
+
+	/**
+	 * Empties the slot of the entity, if it's in this store
+	 * @return true if the entity was removed
+	 */
+	boolean removeEntity(E entity) {
+		int slot = slots.getSlot(entity);
+		if (slot < 0 || slot >= end || entities[slot] != entity) {
+			return false;
+		}
+		entities[slot] = null;
+		slots.setSlot(entity, -1);
+		size--;
+		return true;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		return type.isInstance(o) && removeEntity(type.cast(o));
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if (!type.isInstance(o)) {
+			return false;
+		}
+		int slot = slots.getSlot(type.cast(o));
+		return slot >= 0 && slot < end && entities[slot] == o;
+	}
+
+	/**
+	 * Moves entities to fill empty slots, without changing their order
+	 */
+	@SuppressWarnings("unchecked")
+	void compact() {
+		if (size == end) {
+			return;
+		}
+		int to = 0;
+		for (int from = 0 ; from < end ; from++) {
+			Object entity = entities[from];
+			if (entity != null) {
+				if (to != from) {
+					entities[to] = entity;
+					slots.setSlot((E) entity, to);
+				}
+				to++;
+			}
+		}
+		Arrays.fill(entities, to, end, null);
+		end = to;
+	}
+
+	/**
+	 * @return the number of slots in use, including empty ones : every entity has a slot below it
+	 */
+	int getSlotCount() {
+		return end;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		return new Iterator<E>() {
+			private int next = skipEmptySlots(0);
+			private int current = -1;
+
+			@Override
+			public boolean hasNext() {
+				// The next entity may have been removed since
+				next = skipEmptySlots(next);
+				return next < end;
+			}
+
+			@Override
+			@SuppressWarnings("unchecked")
+			public E next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				current = next;
+				next = skipEmptySlots(next + 1);
+				return (E) entities[current];
+			}
+
+			@Override
+			@SuppressWarnings("unchecked")
+			public void remove() {
+				if (current < 0 || entities[current] == null) {
+					throw new IllegalStateException();
+				}
+				removeEntity((E) entities[current]);
+			}
+		};
+	}
+
+	private int skipEmptySlots(int slot) {
+		while (slot < end && entities[slot] == null) {
+			slot++;
+		}
+		return slot;
+	}
+}
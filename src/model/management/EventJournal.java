@@ -0,0 +1,207 @@
+package model.management;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Append-only file of what happened in a world (births, deaths, attacks, meals, rotting), to be analysed later with {@link EventJournalReader}.
+ * Attach it with {@link Simulator#setJournal(EventJournal)}.
+ * Events of a tick are gathered in memory, then written by a background thread while the next ticks run.
+ * Every record is {@link #RECORD_SIZE} bytes long :
+ * tick (int), type (int, see {@link EventType}), subject (long), other (long), third (long), x (int), y (int), value (int).
+ * Animals are identified by {@link Animal#getId()}, -1 meaning none.
+ */
+public final class EventJournal implements Closeable {
+	public enum EventType {
+		/**
+		 * subject is the baby, other and third its parents, value its generation
+		 */
+		BIRTH,
+		/**
+		 * subject died at (x,y), value is its age
+		 */
+		DEATH,
+		/**
+		 * subject attacked other, which was at (x,y), value is the damage
+		 */
+		ATTACK,
+		/**
+		 * subject ate from the grass at (x,y), value is the fullness gained
+		 */
+		EAT_GRASS,
+		/**
+		 * subject ate the carcass other, which was at (x,y), value is the fullness gained
+		 */
+		EAT_ANIMAL,
+		/**
+		 * The carcass subject rotted away at (x,y), value is its age
+		 */
+		ROT
+	}
+
+	static final int MAGIC = 0x414E534A; // "ANSJ"
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 12;
+	public static final int RECORD_SIZE = 44;
+
+	private static final int BATCH_SIZE = RECORD_SIZE * 2048;
+
+	/**
+	 * Batches waiting for the writer, at most that many before the simulation waits for the disk
+	 */
+	private static final int MAX_PENDING_BATCHES = 64;
+
+	/**
+	 * Put in {@link #pending} to tell the writer to stop
+	 */
+	private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+	private final FileChannel channel;
+	private final BlockingQueue<ByteBuffer> pending;
+	private final ConcurrentLinkedQueue<ByteBuffer> free;
+	private final Thread writer;
+
+	/**
+	 * Events of the current tick, only touched by the simulator thread
+	 */
+	private ByteBuffer batch;
+
+	private volatile IOException failure;
+	private boolean closed;
+
+	public EventJournal(Path file) throws IOException {
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).flip();
+		while (header.hasRemaining()) {
+			channel.write(header);
+		}
+
+		this.pending = new ArrayBlockingQueue<ByteBuffer>(MAX_PENDING_BATCHES);
+		this.free = new ConcurrentLinkedQueue<ByteBuffer>();
+		this.batch = ByteBuffer.allocateDirect(BATCH_SIZE);
+		this.closed = false;
+		this.writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writeBatches();
+			}
+		}, "event-journal-writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/**
+	 * Only called from the simulator thread, during the phases that don't run in parallel
+	 */
+	void record(int tick, EventType type, long subject, long other, long third, int x, int y, int value) {
+		if (closed) {
+			return;
+		}
+		if (batch.remaining() < RECORD_SIZE) {
+			send();
+		}
+		batch.putInt(tick);
+		batch.putInt(type.ordinal());
+		batch.putLong(subject);
+		batch.putLong(other);
+		batch.putLong(third);
+		batch.putInt(x);
+		batch.putInt(y);
+		batch.putInt(value);
+	}
+
+	/**
+	 * Hands the events of the tick over to the writer
+	 */
+	void endTick() {
+		if (!closed && batch.position() > 0) {
+			send();
+		}
+	}
+
+	private void send() {
+		batch.flip();
+		putPending(batch);
+		batch = free.poll();
+		if (batch == null) {
+			batch = ByteBuffer.allocateDirect(BATCH_SIZE);
+		}
+	}
+
+	private void putPending(ByteBuffer b) {
+		boolean interrupted = false;
+		while (true) {
+			try {
+				pending.put(b);
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void writeBatches() {
+		try {
+			while (true) {
+				ByteBuffer b = pending.take();
+				if (b == END) {
+					return;
+				}
+				// After a failure, batches are still taken so that the simulation never waits for a dead writer
+				if (failure == null) {
+					try {
+						while (b.hasRemaining()) {
+							channel.write(b);
+						}
+					} catch (IOException e) {
+						failure = e;
+					}
+				}
+				b.clear();
+				free.add(b);
+			}
+		} catch (InterruptedException e) {
+			failure = new IOException("Journal writer interrupted", e);
+		}
+	}
+
+	/**
+	 * Writes what's left, waits for the writer and closes the file
+	 * @throws IOException if anything couldn't be written since the journal was opened
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		endTick();
+		closed = true;
+		putPending(END);
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		try {
+			if (failure == null) {
+				channel.force(false);
+			}
+		} finally {
+			channel.close();
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package model.management;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import model.management.EventJournal.EventType;
+
+/**
+ * Reads an {@link EventJournal} back, one record at a time, with only a small part of the file in memory.
+ * The getters describe the record of the last successful {@link #next()} :
+ * <pre>
+ * try (EventJournalReader reader = new EventJournalReader(file)) {
+ *     while (reader.next()) {
+ *         if (reader.getType() == EventType.BIRTH) ...
+ *     }
+ * }
+ * </pre>
+ */
+public final class EventJournalReader implements Closeable {
+	private static final EventType TYPES[] = EventType.values();
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer;
+
+	private int tick;
+	private EventType type;
+	private long subject;
+	private long other;
+	private long third;
+	private int x;
+	private int y;
+	private int value;
+
+	public EventJournalReader(Path file) throws IOException {
+		this.channel = FileChannel.open(file, StandardOpenOption.READ);
+		this.buffer = ByteBuffer.allocateDirect(EventJournal.RECORD_SIZE * 4096);
+		this.buffer.flip();
+		try {
+			if (!fill(EventJournal.HEADER_SIZE) || buffer.getInt() != EventJournal.MAGIC) {
+				throw new IOException(file + " isn't an event journal");
+			}
+			int version = buffer.getInt();
+			int recordSize = buffer.getInt();
+			if (version != EventJournal.VERSION || recordSize != EventJournal.RECORD_SIZE) {
+				throw new IOException("Unsupported journal version " + version);
+			}
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Moves to the next record
+	 * @return false if there is none left. A record cut by a crash of the simulation is ignored.
+	 */
+	public boolean next() throws IOException {
+		if (!fill(EventJournal.RECORD_SIZE)) {
+			return false;
+		}
+		tick = buffer.getInt();
+		int ordinal = buffer.getInt();
+		if (ordinal < 0 || ordinal >= TYPES.length) {
+			throw new IOException("Unknown event type " + ordinal);
+		}
+		type = TYPES[ordinal];
+		subject = buffer.getLong();
+		other = buffer.getLong();
+		third = buffer.getLong();
+		x = buffer.getInt();
+		y = buffer.getInt();
+		value = buffer.getInt();
+		return true;
+	}
+
+	/**
+	 * Reads from the file until at least n bytes are in the buffer
+	 * @return false if the file ends before
+	 */
+	private boolean fill(int n) throws IOException {
+		if (buffer.remaining() >= n) {
+			return true;
+		}
+		buffer.compact();
+		while (buffer.position() < n) {
+			if (channel.read(buffer) < 0) {
+				buffer.flip();
+				return false;
+			}
+		}
+		buffer.flip();
+		return true;
+	}
+
+	public int getTick() {
+		return tick;
+	}
+
+	public EventType getType() {
+		return type;
+	}
+
+	public long getSubject() {
+		return subject;
+	}
+
+	public long getOther() {
+		return other;
+	}
+
+	public long getThird() {
+		return third;
+	}
+
+	public int getX() {
+		return x;
+	}
+
+	public int getY() {
+		return y;
+	}
+
+	public int getValue() {
+		return value;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -16,10 +16,16 @@ public class Feature implements Cloneable {
 	
 	private Animal animal;
 
-	Feature(int UPGRADING_COST, int startingValue, Animal animal) {
+	/**
+	 * Where the value is in an {@link AnimalTable}, when the animal is backed by one
+	 */
+	private final int column;
+
+	Feature(int UPGRADING_COST, int startingValue, Animal animal, int column) {
 		this.UPGRADING_COST = UPGRADING_COST;
 		this.value = startingValue;
 		this.animal = animal;
+		this.column = column;
 		this.leftoverPoints = 0;
 	}
 	
@@ -29,7 +35,7 @@ public class Feature implements Cloneable {
 			nbTimesImproved = (adnToSpend+leftoverPoints)/UPGRADING_COST;
 			leftoverPoints =  (adnToSpend+leftoverPoints)%UPGRADING_COST;
 			this.animal.removeAdnPoints(adnToSpend);
-			this.value += nbTimesImproved;
+			this.setValue(this.getValue() + nbTimesImproved);
 		}
 	}
 	
@@ -37,12 +43,46 @@ public class Feature implements Cloneable {
 	 * Used to deep-copy for newborns
 	 */
 	Feature getClone(Animal newAnimalRef) {
-		Feature clone = new Feature(UPGRADING_COST, value, newAnimalRef);
+		Feature clone = new Feature(UPGRADING_COST, getValue(), newAnimalRef, column);
 		clone.leftoverPoints = leftoverPoints;
 		return clone;
 	}
 
 	public int getValue() {
-		return value;
+		AnimalTable table = animal.getTable();
+		return table != null ? table.features[column][animal.getSlot()] : value;
+	}
+
+	private void setValue(int value) {
+		AnimalTable table = animal.getTable();
+		if (table != null) {
+			table.features[column][animal.getSlot()] = value;
+		} else {
+			this.value = value;
+		}
+	}
+
+	void copyValueTo(AnimalTable table, int row) {
+		table.features[column][row] = value;
+	}
+
+	void copyValueFrom(AnimalTable table, int row) {
+		value = table.features[column][row];
+	}
+
+	int getLeftoverPoints() {
+		return leftoverPoints;
+	}
+
+	/**
+	 * See {@link WorldCheckpoint}. The animal must not be backed by a table.
+	 */
+	void restore(int value, int leftoverPoints) {
+		this.value = value;
+		this.leftoverPoints = leftoverPoints;
+	}
+
+	Animal getAnimal() {
+		return animal;
 	}
 }
@@ -1,6 +1,6 @@
 package model.management;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
 public class Grass implements Cloneable {
 	private final Coordinate pos;
@@ -8,20 +8,50 @@ public class Grass implements Cloneable {
 	private int amount;
 	private int age;
 
+	/**
+	 * See {@link GrassIndex}
+	 */
+	private long indexOrder;
+
+	/**
+	 * Where the grass is in the {@link Simulator#getAllFoodSources()} of its simulator, -1 if it isn't there
+	 */
+	private int slot;
+
 	public final static int GROWTH_TIME = 5;
 	public final static int MIN_INITIAL_AMOUNT = 500;
 	public final static int FULLNESS_AMOUNT_PER_BITE = 8;
 	
 	
 	public Grass(int x, int y) {
+		this(x, y, new SplittableRandom());
+	}
+
+	/**
+	 * @param random where the initial amount is drawn from
+	 */
+	public Grass(int x, int y, SplittableRandom random) {
 		this.pos = new Coordinate(x, y);
 		this.age = 0;
-		this.amount = MIN_INITIAL_AMOUNT + new Random().nextInt(MIN_INITIAL_AMOUNT/2);
+		this.slot = -1;
+		this.amount = MIN_INITIAL_AMOUNT + random.nextInt(MIN_INITIAL_AMOUNT/2);
+	}
+	
+	/**
+	 * See {@link WorldCheckpoint}
+	 */
+	Grass(int x, int y, int amount, int age) {
+		this.pos = new Coordinate(x, y);
+		this.age = age;
+		this.slot = -1;
+		this.amount = amount;
 	}
 	
 	public Grass getClone() {
 		try {
-			return (Grass) this.clone();
+			Grass clone = (Grass) this.clone();
+			clone.slot = -1;
+			return clone;
 		} catch (CloneNotSupportedException e) {
 			e.printStackTrace();
 		}
@@ -55,6 +85,10 @@ public class Grass implements Cloneable {
 		return fullnessGain;
 	}
 
+	int getAge() {
+		return age;
+	}
+
 	void nextTick() {
 		this.age++;
 		if (this.age % GROWTH_TIME == 0) {
@@ -77,4 +111,24 @@ public class Grass implements Cloneable {
 	Coordinate getPos() {
 		return pos;
 	}
+
+	long getIndexOrder() {
+		return indexOrder;
+	}
+
+	void setIndexOrder(long indexOrder) {
+		this.indexOrder = indexOrder;
+	}
+
+	boolean isInWorld() {
+		return slot >= 0;
+	}
+
+	int getSlot() {
+		return slot;
+	}
+
+	void setSlot(int slot) {
+		this.slot = slot;
+	}
 }
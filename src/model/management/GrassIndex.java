@@ -0,0 +1,85 @@
+package model.management;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Bucket grid of the grass patches of a world.
+ * Grass doesn't move, so patches are only added or removed one at a time when they appear or get fully eaten.
+ */
+final class GrassIndex {
+	private final int cellSize;
+	private final int columns;
+	private final int rows;
+	private final List<List<Grass>> cells;
+
+	/**
+	 * Order in which the next added grass will be iterated over. Keeps query results in the same order as {@link Simulator#getAllFoodSources()}
+	 */
+	private long nextOrder;
+
+	private static final Comparator<Grass> BY_ORDER = new Comparator<Grass>() {
+		@Override
+		public int compare(Grass g1, Grass g2) {
+			return Long.compare(g1.getIndexOrder(), g2.getIndexOrder());
+		}
+	};
+
+	GrassIndex(int width, int height, int cellSize) {
+		this.cellSize = cellSize;
+		this.columns = Math.max(1, (width + cellSize - 1) / cellSize);
+		this.rows = Math.max(1, (height + cellSize - 1) / cellSize);
+		this.cells = new ArrayList<List<Grass>>(columns * rows);
+		for (int i = 0 ; i < columns * rows ; i++) {
+			cells.add(new ArrayList<Grass>(0));
+		}
+		this.nextOrder = 0;
+	}
+
+	void add(Grass g) {
+		g.setIndexOrder(nextOrder++);
+		cells.get(cellOf(g.getPosX(), g.getPosY())).add(g);
+	}
+
+	void remove(Grass g) {
+		cells.get(cellOf(g.getPosX(), g.getPosY())).remove(g);
+	}
+
+	/**
+	 * Fills result with the patches in the cells overlapping the square of given radius around (x,y), in the order they were added.
+	 * The caller still has to check the actual distance.
+	 */
+	void query(int x, int y, int radius, List<Grass> result) {
+		result.clear();
+		int minColumn = column(x - radius);
+		int maxColumn = column(x + radius);
+		int minRow = row(y - radius);
+		int maxRow = row(y + radius);
+		for (int r = minRow ; r <= maxRow ; r++) {
+			for (int c = minColumn ; c <= maxColumn ; c++) {
+				List<Grass> cell = cells.get(c + r * columns);
+				// Not addAll, which copies the cell in a new array
+				for (int i = 0 ; i < cell.size() ; i++) {
+					result.add(cell.get(i));
+				}
+			}
+		}
+		if (minColumn != maxColumn || minRow != maxRow) {
+			Collections.sort(result, BY_ORDER);
+		}
+	}
+
+	private int cellOf(int x, int y) {
+		return column(x) + row(y) * columns;
+	}
+
+	private int column(int x) {
+		return Math.min(columns - 1, Math.max(0, x / cellSize));
+	}
+
+	private int row(int y) {
+		return Math.min(rows - 1, Math.max(0, y / cellSize));
+	}
+}
@@ -1,18 +1,20 @@
 package model.management;
 
-import java.awt.GraphicsEnvironment;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Random;
+import java.util.Map;
+import java.util.SplittableRandom;
 
 import model.Predator;
 
 public class MapGenerator {
-	public final int MAP_WIDTH = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDisplayMode().getWidth() - 20;
-	public final int MAP_HEIGHT = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDisplayMode().getHeight() - 150;
+	public final int MAP_WIDTH;
+	public final int MAP_HEIGHT;
 
-	public final int MAX_NB_RIVERS = (MAP_WIDTH+MAP_HEIGHT)/600;
+	public final int MAX_NB_RIVERS;
 	public final int MIN_NB_NODE_IN_RIVERS = 3;
 	public final int MAX_ADDITIONNAL_NB_NODE_IN_RIVERS = 3;
 	
@@ -20,48 +22,83 @@ public class MapGenerator {
 	 * How much distance there must be at minimum between 2 nodes of a single river.
 	 * This creates a minimum square around the node, not a circle.
 	 */
-	public final int RIVER_MIN_DISTANCE = MAX_NB_RIVERS*12;
+	public final int RIVER_MIN_DISTANCE;
 	/**
 	 * Distance between the edge of the minimum square (see {@link MapGenerator#RIVER_MIN_DISTANCE}) and the outer edge (maximum square)
 	 */
-	public final int RIVER_MAX_DISTANCE = RIVER_MIN_DISTANCE*4;
+	public final int RIVER_MAX_DISTANCE;
 
-	public final int STARTING_VEGETATION = (MAP_WIDTH+MAP_HEIGHT)/100;
-	public final int STARTING_ANIMALS = STARTING_VEGETATION;
-	public final int STARTING_PREDATORS = STARTING_ANIMALS/2;
+	public final int STARTING_VEGETATION;
+	public final int STARTING_ANIMALS;
+	public final int STARTING_PREDATORS;
 
-	public MapGenerator() {
+	public MapGenerator(WorldConfiguration config) {
+		MAP_WIDTH = config.getMapWidth();
+		MAP_HEIGHT = config.getMapHeight();
+		// Rivers start in the middle half of the map, which needs at least 2 pixels each way
+		MAX_NB_RIVERS = config.hasRivers() && MAP_WIDTH >= 2 && MAP_HEIGHT >= 2 ? (MAP_WIDTH+MAP_HEIGHT)/600 : 0;
+		RIVER_MIN_DISTANCE = MAX_NB_RIVERS*12;
+		RIVER_MAX_DISTANCE = RIVER_MIN_DISTANCE*4;
+		STARTING_VEGETATION = config.getStartingVegetation();
+		STARTING_ANIMALS = config.getStartingAnimals();
+		STARTING_PREDATORS = config.getStartingPredators();
 	}
 
-	public void generateWorld(List<Animal> allAnimals, List<Grass> allGrass, List<River> allRivers, Class<?> race, boolean predators, Simulator simulator) {
-		Random r = new Random();
-		for (int i = 0 ; i < STARTING_ANIMALS ; i++) {
-			int x = r.nextInt(MAP_WIDTH);
-			int y = r.nextInt(MAP_HEIGHT);
+	/**
+	 * The populations of a world with the starting animals of the given race, and the starting predators if predators is true
+	 */
+	static Map<Class<?>, Integer> startingPopulations(Class<?> race, boolean predators, WorldConfiguration config) {
+		return startingPopulations(race, predators, config.getStartingAnimals(), config.getStartingPredators());
+	}
+
+	private static Map<Class<?>, Integer> startingPopulations(Class<?> race, boolean predators, int nbAnimals, int nbPredators) {
+		Map<Class<?>, Integer> populations = new LinkedHashMap<Class<?>, Integer>();
+		populations.put(race, nbAnimals);
+		if (predators) {
+			// The race may be Predator itself
+			Integer predatorsOfRace = populations.get(Predator.class);
+			populations.put(Predator.class, nbPredators + (predatorsOfRace == null ? 0 : predatorsOfRace));
+		}
+		return populations;
+	}
+
+	public void generateWorld(Collection<Animal> allAnimals, Collection<Grass> allGrass, List<River> allRivers, Class<?> race, boolean predators, Simulator simulator) {
+		generateWorld(allAnimals, allGrass, allRivers, startingPopulations(race, predators, STARTING_ANIMALS, STARTING_PREDATORS), simulator);
+	}
 
+	/**
+	 * @param populations how many animals of each class to create, in that order
+	 */
+	public void generateWorld(Collection<Animal> allAnimals, Collection<Grass> allGrass, List<River> allRivers, Map<Class<?>, Integer> populations, Simulator simulator) {
+		SplittableRandom r = simulator.newRandom(Simulator.MAP_STREAM, 0);
+		for (Map.Entry<Class<?>, Integer> population : populations.entrySet()) {
+			Constructor<?> constructor;
 			try {
-				Constructor<?> constructor = race.getConstructor(int.class, int.class, Simulator.class);
-				Animal animalInstance = (Animal) constructor.newInstance(x, y, simulator);
-				allAnimals.add(animalInstance);
-			} catch (NoSuchMethodException | SecurityException | InstantiationException | IllegalAccessException | InvocationTargetException e) {
+				constructor = population.getKey().getConstructor(int.class, int.class, Simulator.class);
+			} catch (NoSuchMethodException | SecurityException e) {
 				e.printStackTrace();
+				continue;
 			}
-		}
-		if (predators) {
-			for (int i = 0 ; i < STARTING_PREDATORS ; i++) {
+			for (int i = 0 ; i < population.getValue() ; i++) {
 				int x = r.nextInt(MAP_WIDTH);
 				int y = r.nextInt(MAP_HEIGHT);
-				allAnimals.add(new Predator(x, y, simulator));
+
+				try {
+					Animal animalInstance = (Animal) constructor.newInstance(x, y, simulator);
+					allAnimals.add(animalInstance);
+				} catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+					e.printStackTrace();
+				}
 			}
 		}
 		
 		for (int i = 0 ; i < STARTING_VEGETATION ; i++) {
 			int x = r.nextInt(MAP_WIDTH);
 			int y = r.nextInt(MAP_HEIGHT);
-			allGrass.add(new Grass(x, y));
+			allGrass.add(new Grass(x, y, r));
 		}
 
-		for (int currRiver = 0 ; currRiver <= r.nextInt(MAX_NB_RIVERS) ; currRiver++) {
+		for (int currRiver = 0 ; MAX_NB_RIVERS > 0 && currRiver <= r.nextInt(MAX_NB_RIVERS) ; currRiver++) {
 			Coordinate riverNodes[];
 			riverNodes = new Coordinate[MIN_NB_NODE_IN_RIVERS + r.nextInt(MAX_ADDITIONNAL_NB_NODE_IN_RIVERS + 1)];
 			
@@ -0,0 +1,384 @@
+package model.management;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Verlet lists : for each animal, the animals within its detection distance plus a skin, found once with a {@link SpatialGrid} and reused over the next ticks.
+ * Distances are measured between the positions animals had when they were listed. As long as no animal moved more than half the skin since then,
+ * two animals got at most a skin closer, so every animal an animal can detect is still in its list : detection only has to check the actual distance of the animals in the list.
+ * Lists are built again once an animal moved further or an animal's detection distance grew.
+ * When animals join or leave the world, lists are only patched : indexes are shifted, and newcomers are listed and added to the lists around them.
+ * Lists are sorted by index in the snapshot of the world, so animals are detected in the same order as with a grid query.
+ */
+final class NeighbourLists {
+	/**
+	 * What {@link NeighbourLists#startTick(Animal[], int[], int[], int)} did with the lists
+	 */
+	enum Update {
+		/** Nothing changed enough, lists are used as they are */
+		REUSED,
+		/** Animals joined or left the world : the grid must be up to date for {@link NeighbourLists#addNewcomers(SpatialGrid, SpatialGrid.Hits)} */
+		PATCHED,
+		/** The grid must be up to date for {@link NeighbourLists#build(int, SpatialGrid, int[], SpatialGrid.Hits)} to be called for every animal */
+		REBUILT
+	}
+
+	private final int skin;
+
+	/**
+	 * What the animals were when they were listed, by index in the snapshot of the world
+	 */
+	private Animal listedAnimals[];
+	private int listedX[];
+	private int listedY[];
+	private int listedDetection[];
+	private int nbListed;
+
+	/**
+	 * lists[i] holds sizes[i] indexes of animals around animal i
+	 */
+	private int lists[][];
+	private int sizes[];
+
+	/**
+	 * Swapped with the arrays above when animals joined or left the world
+	 */
+	private Animal spareAnimals[];
+	private int spareX[];
+	private int spareY[];
+	private int spareDetection[];
+	private int spareLists[][];
+	private int spareSizes[];
+
+	/**
+	 * Where each animal listed before the patch now is, -1 if it left
+	 */
+	private int oldToNew[];
+	private boolean newcomer[];
+	private final Map<Animal, Integer> newIndexes;
+
+	/**
+	 * True during the ticks where lists are built instead of reused
+	 */
+	private boolean building;
+
+	private int rebuilds;
+	private int patches;
+
+	NeighbourLists(int skin) {
+		if (skin <= 0) {
+			throw new IllegalArgumentException("The skin must be positive");
+		}
+		this.skin = skin;
+		this.listedAnimals = new Animal[0];
+		this.listedX = new int[0];
+		this.listedY = new int[0];
+		this.listedDetection = new int[0];
+		this.nbListed = 0;
+		this.lists = new int[0][];
+		this.sizes = new int[0];
+		this.spareAnimals = new Animal[0];
+		this.spareX = new int[0];
+		this.spareY = new int[0];
+		this.spareDetection = new int[0];
+		this.spareLists = new int[0][];
+		this.spareSizes = new int[0];
+		this.oldToNew = new int[0];
+		this.newcomer = new boolean[0];
+		this.newIndexes = new IdentityHashMap<Animal, Integer>();
+		this.building = false;
+		this.rebuilds = 0;
+		this.patches = 0;
+	}
+
+	/**
+	 * To be called at the start of the detection phase, with the snapshot of the world
+	 */
+	Update startTick(Animal animals[], int xs[], int ys[], int count) {
+		building = false;
+		if (count == nbListed && sameAnimals(animals, count)) {
+			for (int i = 0 ; i < count ; i++) {
+				if (!isStillListed(i, animals[i], xs[i], ys[i])) {
+					return startBuilding(animals, xs, ys, count);
+				}
+			}
+			return Update.REUSED;
+		}
+
+		ensureSpareCapacity(count);
+		newIndexes.clear();
+		for (int i = 0 ; i < count ; i++) {
+			newIndexes.put(animals[i], i);
+			newcomer[i] = true;
+		}
+		for (int old = 0 ; old < nbListed ; old++) {
+			Integer i = newIndexes.get(listedAnimals[old]);
+			if (i != null && !isStillListed(old, animals[i], xs[i], ys[i])) {
+				return startBuilding(animals, xs, ys, count);
+			}
+			oldToNew[old] = i != null ? i : -1;
+			if (i != null) {
+				newcomer[i] = false;
+			}
+		}
+		patch(animals, xs, ys, count);
+		patches++;
+		return Update.PATCHED;
+	}
+
+	private boolean sameAnimals(Animal animals[], int count) {
+		for (int i = 0 ; i < count ; i++) {
+			if (animals[i] != listedAnimals[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if the animal listed at index listed can keep its list, being now at (x,y)
+	 */
+	private boolean isStillListed(int listed, Animal a, int x, int y) {
+		// A smaller detection distance is still covered by the list
+		if (a.getDetectionDistanceValue() > listedDetection[listed]) {
+			return false;
+		}
+		// Moving more than half the skin : 2 * distance > skin
+		long dx = x - listedX[listed];
+		long dy = y - listedY[listed];
+		return 4 * (dx*dx + dy*dy) <= (long) skin * skin;
+	}
+
+	private Update startBuilding(Animal animals[], int xs[], int ys[], int count) {
+		ensureCapacity(count);
+		// Previous animals aren't kept alive by the lists
+		if (nbListed > count) {
+			Arrays.fill(listedAnimals, count, nbListed, null);
+		}
+		System.arraycopy(animals, 0, listedAnimals, 0, count);
+		System.arraycopy(xs, 0, listedX, 0, count);
+		System.arraycopy(ys, 0, listedY, 0, count);
+		for (int i = 0 ; i < count ; i++) {
+			listedDetection[i] = animals[i].getDetectionDistanceValue();
+		}
+		nbListed = count;
+		building = true;
+		rebuilds++;
+		return Update.REBUILT;
+	}
+
+	/**
+	 * Moves what was listed to the new indexes of the animals, newcomers being listed where they are but with empty lists
+	 */
+	private void patch(Animal animals[], int xs[], int ys[], int count) {
+		for (int i = 0 ; i < count ; i++) {
+			spareAnimals[i] = animals[i];
+			if (newcomer[i]) {
+				spareX[i] = xs[i];
+				spareY[i] = ys[i];
+				spareDetection[i] = animals[i].getDetectionDistanceValue();
+				spareSizes[i] = 0;
+			}
+		}
+		for (int old = 0 ; old < nbListed ; old++) {
+			int i = oldToNew[old];
+			if (i < 0) {
+				continue;
+			}
+			spareX[i] = listedX[old];
+			spareY[i] = listedY[old];
+			spareDetection[i] = listedDetection[old];
+			// The array is given to its new index, and its old one gets that of the animal that was there
+			int list[] = lists[old];
+			int size = 0;
+			boolean sorted = true;
+			for (int k = 0 ; k < sizes[old] ; k++) {
+				int j = oldToNew[list[k]];
+				if (j >= 0) {
+					sorted &= size == 0 || list[size - 1] < j;
+					list[size++] = j;
+				}
+			}
+			if (!sorted) {
+				Arrays.sort(list, 0, size);
+			}
+			lists[old] = spareLists[i];
+			spareLists[i] = list;
+			spareSizes[i] = size;
+		}
+		Animal animalsArray[] = listedAnimals;
+		listedAnimals = spareAnimals;
+		spareAnimals = animalsArray;
+		Arrays.fill(spareAnimals, 0, nbListed, null);
+		int array[] = listedX;
+		listedX = spareX;
+		spareX = array;
+		array = listedY;
+		listedY = spareY;
+		spareY = array;
+		array = listedDetection;
+		listedDetection = spareDetection;
+		spareDetection = array;
+		array = sizes;
+		sizes = spareSizes;
+		spareSizes = array;
+		int listsArray[][] = lists;
+		lists = spareLists;
+		spareLists = listsArray;
+		nbListed = count;
+	}
+
+	/**
+	 * Lists the animals that joined the world, and adds them to the lists of the animals around them.
+	 * Only to be called after {@link Update#PATCHED}, by a single thread.
+	 * @param grid where the animals of the snapshot of the world are, by index
+	 * @param hits reused for the queries
+	 */
+	void addNewcomers(SpatialGrid grid, SpatialGrid.Hits hits) {
+		int maxDetection = 0;
+		for (int i = 0 ; i < nbListed ; i++) {
+			maxDetection = Math.max(maxDetection, listedDetection[i]);
+		}
+		for (int j = 0 ; j < nbListed ; j++) {
+			if (!newcomer[j]) {
+				continue;
+			}
+			final int x = listedX[j];
+			final int y = listedY[j];
+			// The grid has current positions, which are up to half a skin away from listed ones
+			grid.query(x, y, maxDetection + 2 * skin, hits);
+			int size = 0;
+			for (int k = 0 ; k < hits.size() ; k++) {
+				int i = hits.get(k);
+				if (i == j) {
+					continue;
+				}
+				if (Simulator.isDetectable(x, y, listedX[i], listedY[i], listedDetection[j] + skin)) {
+					size = append(j, size, i);
+				}
+				// Newcomers list each other themselves
+				if (!newcomer[i] && Simulator.isDetectable(listedX[i], listedY[i], x, y, listedDetection[i] + skin)) {
+					insert(i, j);
+				}
+			}
+			sizes[j] = size;
+		}
+	}
+
+	private int append(int i, int size, int j) {
+		int list[] = lists[i];
+		if (list == null || list.length == size) {
+			list = list == null ? new int[16] : Arrays.copyOf(list, size * 2);
+			lists[i] = list;
+		}
+		list[size] = j;
+		return size + 1;
+	}
+
+	/**
+	 * Adds j to the list of i, keeping it sorted
+	 */
+	private void insert(int i, int j) {
+		int size = sizes[i];
+		append(i, size, j);
+		int list[] = lists[i];
+		int k = size;
+		while (k > 0 && list[k - 1] > j) {
+			list[k] = list[k - 1];
+			k--;
+		}
+		list[k] = j;
+		sizes[i] = size + 1;
+	}
+
+	/**
+	 * Builds the list of animal i, if lists are built this tick. Can be called for different animals at the same time.
+	 * @param grid where animals are, by their index in the snapshot of the world or, if gridToSnapshot isn't null, by their index in gridToSnapshot
+	 * @param hits reused for the query
+	 */
+	void build(int i, SpatialGrid grid, int gridToSnapshot[], SpatialGrid.Hits hits) {
+		if (!building) {
+			return;
+		}
+		final int x = listedX[i];
+		final int y = listedY[i];
+		final int radius = listedDetection[i] + skin;
+		grid.query(x, y, radius, hits);
+		int list[] = lists[i];
+		if (list == null || list.length < hits.size()) {
+			list = new int[Math.max(hits.size(), 16)];
+			lists[i] = list;
+		}
+		int size = 0;
+		for (int k = 0 ; k < hits.size() ; k++) {
+			int j = gridToSnapshot != null ? gridToSnapshot[hits.get(k)] : hits.get(k);
+			if (j != i && Simulator.isDetectable(x, y, listedX[j], listedY[j], radius)) {
+				list[size++] = j;
+			}
+		}
+		sizes[i] = size;
+	}
+
+	private void ensureCapacity(int count) {
+		if (listedAnimals.length < count) {
+			int capacity = Math.max(count, listedAnimals.length * 2);
+			listedAnimals = Arrays.copyOf(listedAnimals, capacity);
+			listedX = new int[capacity];
+			listedY = new int[capacity];
+			listedDetection = new int[capacity];
+			lists = Arrays.copyOf(lists, capacity);
+			sizes = new int[capacity];
+		}
+	}
+
+	private void ensureSpareCapacity(int count) {
+		int capacity = Math.max(count, nbListed);
+		if (spareAnimals.length < capacity) {
+			capacity = Math.max(capacity, spareAnimals.length * 2);
+			spareAnimals = new Animal[capacity];
+			spareX = new int[capacity];
+			spareY = new int[capacity];
+			spareDetection = new int[capacity];
+			spareLists = Arrays.copyOf(spareLists, capacity);
+			spareSizes = new int[capacity];
+			newcomer = new boolean[capacity];
+		}
+		if (oldToNew.length < nbListed) {
+			oldToNew = new int[Math.max(nbListed, oldToNew.length * 2)];
+		}
+		if (newcomer.length < count) {
+			newcomer = new boolean[capacity];
+		}
+	}
+
+	/**
+	 * @return the indexes of the animals around animal i, only the first {@link #getSize(int)} being valid
+	 */
+	int[] getList(int i) {
+		return lists[i];
+	}
+
+	int getSize(int i) {
+		return sizes[i];
+	}
+
+	int getSkin() {
+		return skin;
+	}
+
+	/**
+	 * @return how many times lists were built since the world was created
+	 */
+	int getRebuilds() {
+		return rebuilds;
+	}
+
+	/**
+	 * @return how many times lists were patched for animals joining or leaving the world
+	 */
+	int getPatches() {
+		return patches;
+	}
+}
@@ -0,0 +1,62 @@
+package model.management;
+
+import java.util.Arrays;
+
+/**
+ * Reusable {@link DetectedAnimal} and {@link DetectedGrass} objects, handed out during a tick and all taken back at the next one,
+ * so that detection doesn't allocate anything once the arena is big enough.
+ * See {@link WorldConfiguration#isPooledPerception()}
+ */
+final class PerceptionArena {
+	private DetectedAnimal animals[];
+	private int usedAnimals;
+
+	private DetectedGrass grass[];
+	private int usedGrass;
+
+	/**
+	 * Tick the handed out snapshots belong to
+	 */
+	private int tick;
+
+	PerceptionArena() {
+		this.animals = new DetectedAnimal[0];
+		this.grass = new DetectedGrass[0];
+		this.tick = -1;
+	}
+
+	/**
+	 * Takes back every snapshot handed out before the given tick
+	 */
+	void startTick(int tick) {
+		if (this.tick != tick) {
+			this.tick = tick;
+			usedAnimals = 0;
+			usedGrass = 0;
+		}
+	}
+
+	DetectedAnimal snapshot(Animal a) {
+		if (usedAnimals == animals.length) {
+			animals = Arrays.copyOf(animals, Math.max(16, animals.length * 2));
+			for (int i = usedAnimals ; i < animals.length ; i++) {
+				animals[i] = new DetectedAnimal();
+			}
+		}
+		DetectedAnimal snapshot = animals[usedAnimals++];
+		snapshot.update(a);
+		return snapshot;
+	}
+
+	DetectedGrass snapshot(Grass g) {
+		if (usedGrass == grass.length) {
+			grass = Arrays.copyOf(grass, Math.max(16, grass.length * 2));
+			for (int i = usedGrass ; i < grass.length ; i++) {
+				grass[i] = new DetectedGrass();
+			}
+		}
+		DetectedGrass snapshot = grass[usedGrass++];
+		snapshot.update(g);
+		return snapshot;
+	}
+}
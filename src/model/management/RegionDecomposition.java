@@ -0,0 +1,247 @@
+package model.management;
+
+import java.util.Arrays;
+
+/**
+ * Splits the map into vertical strips, one per worker, for the detection and behave phases of a world with regions (see {@link WorldConfiguration#getRegions()}).
+ * At the start of each tick, every animal is owned by the strip its position is in : an animal that crossed a border while moving has thus migrated by the next tick.
+ * Animals close enough to a border to be detected from the other side (within the largest detection distance, and at least {@link Animal#MAX_DISTANCE_TO_MATE})
+ * are also mirrored as ghosts in the neighbouring strips, so that each strip only looks at its own {@link SpatialGrid}, which only covers the strip and its margin.
+ * Grids are built by the worker of their strip (see {@link Region#index()}) rather than while partitioning.
+ * Strips keep the order of the world, so an animal detects the same animals in the same order as in a world without regions.
+ * Borders move so that strips keep about the same number of animals, once a strip has {@link #REBALANCE_THRESHOLD} times its share.
+ */
+final class RegionDecomposition {
+	/**
+	 * Above that ratio between the most crowded strip and the mean, borders are moved
+	 */
+	static final double REBALANCE_THRESHOLD = 1.2;
+
+	private final int nbRegions;
+	private final int mapWidth;
+	private final int mapHeight;
+	private final int cellSize;
+	private final int columns;
+
+	/**
+	 * Strip r owns the x from bounds[r] included to bounds[r+1] excluded
+	 */
+	private final int bounds[];
+
+	private final Region regions[];
+
+	/**
+	 * Number of animals in each column of {@link #cellSize}, to place borders
+	 */
+	private final int columnCounts[];
+	private final int ownedCounts[];
+
+	private int rebalances;
+
+	RegionDecomposition(int nbRegions, int mapWidth, int mapHeight, int cellSize) {
+		if (nbRegions <= 0) {
+			throw new IllegalArgumentException("There must be at least one region");
+		}
+		this.nbRegions = nbRegions;
+		this.mapWidth = mapWidth;
+		this.mapHeight = mapHeight;
+		this.cellSize = cellSize;
+		this.columns = Math.max(1, (mapWidth + cellSize - 1) / cellSize);
+		this.bounds = new int[nbRegions + 1];
+		for (int r = 0 ; r <= nbRegions ; r++) {
+			bounds[r] = (int) ((long) mapWidth * r / nbRegions);
+		}
+		// Animals may stand on the edges of the map
+		bounds[0] = Integer.MIN_VALUE;
+		bounds[nbRegions] = Integer.MAX_VALUE;
+		this.regions = new Region[nbRegions];
+		for (int r = 0 ; r < nbRegions ; r++) {
+			regions[r] = new Region();
+		}
+		this.columnCounts = new int[columns];
+		this.ownedCounts = new int[nbRegions];
+		this.rebalances = 0;
+	}
+
+	/**
+	 * Gives each of the first count animals to the strip of its position and mirrors those close to a border.
+	 * Strips are then indexed by {@link Region#index()}.
+	 * Animals are identified by their index in the arrays, as in {@link SpatialGrid#rebuild(int[], int[], int)}.
+	 * @param skin added to detection distances, for strips to also hold the animals of {@link NeighbourLists}
+	 */
+	void partition(Animal animals[], int xs[], int ys[], int count, int skin) {
+		int margin = Animal.MAX_DISTANCE_TO_MATE;
+		for (int i = 0 ; i < count ; i++) {
+			margin = Math.max(margin, animals[i].getDetectionDistanceValue() + skin);
+		}
+
+		rebalance(xs, count);
+
+		for (Region region : regions) {
+			region.ensureCapacity(count);
+			region.nbOwned = 0;
+			region.nbMembers = 0;
+		}
+		for (int i = 0 ; i < count ; i++) {
+			final int x = xs[i];
+			final int owner = regionOf(x);
+			regions[owner].owned[regions[owner].nbOwned++] = i;
+			// Members are added in the order of the world, whatever their strip
+			for (int r = owner - 1 ; r >= 0 && x < bounds[r + 1] + margin ; r--) {
+				regions[r].addMember(i, x, ys[i]);
+			}
+			regions[owner].addMember(i, x, ys[i]);
+			for (int r = owner + 1 ; r < nbRegions && x >= bounds[r] - margin ; r++) {
+				regions[r].addMember(i, x, ys[i]);
+			}
+		}
+		for (int r = 0 ; r < nbRegions ; r++) {
+			// Whole cells, so that a margin changing a little keeps the same grid
+			int from = r == 0 ? 0 : Math.max(0, bounds[r] - margin) / cellSize * cellSize;
+			int to = r == nbRegions - 1 ? mapWidth : Math.min(mapWidth, (bounds[r + 1] + margin + cellSize - 1) / cellSize * cellSize);
+			regions[r].setExtent(from, Math.max(from + 1, to));
+		}
+	}
+
+	/**
+	 * Moves borders so that each strip owns about as many animals, if the current ones are too unbalanced
+	 */
+	private void rebalance(int xs[], int count) {
+		if (count == 0 || nbRegions == 1) {
+			return;
+		}
+		Arrays.fill(ownedCounts, 0);
+		for (int i = 0 ; i < count ; i++) {
+			ownedCounts[regionOf(xs[i])]++;
+		}
+		int max = 0;
+		for (int n : ownedCounts) {
+			max = Math.max(max, n);
+		}
+		if (max <= REBALANCE_THRESHOLD * count / nbRegions) {
+			return;
+		}
+
+		Arrays.fill(columnCounts, 0);
+		for (int i = 0 ; i < count ; i++) {
+			columnCounts[Math.min(columns - 1, Math.max(0, xs[i] / cellSize))]++;
+		}
+		// Border r is at the first column after which r/nbRegions of the animals are on its left
+		int cumulated = 0;
+		int column = 0;
+		for (int r = 1 ; r < nbRegions ; r++) {
+			long target = (long) count * r / nbRegions;
+			while (column < columns && cumulated + columnCounts[column] <= target) {
+				cumulated += columnCounts[column];
+				column++;
+			}
+			bounds[r] = column * cellSize;
+		}
+		rebalances++;
+	}
+
+	private int regionOf(int x) {
+		int r = 0;
+		while (r < nbRegions - 1 && x >= bounds[r + 1]) {
+			r++;
+		}
+		return r;
+	}
+
+	int getRegionCount() {
+		return nbRegions;
+	}
+
+	Region getRegion(int r) {
+		return regions[r];
+	}
+
+	/**
+	 * @return how many times borders moved since the world was created
+	 */
+	int getRebalances() {
+		return rebalances;
+	}
+
+	/**
+	 * A strip : the animals it owns, and those it can see (owned and ghosts) indexed in its own grid
+	 */
+	final class Region {
+		/**
+		 * Indexes of the animals owned, in the order of the world
+		 */
+		int owned[];
+		int nbOwned;
+
+		/**
+		 * Indexes of the animals owned or mirrored, in the order of the world. The grid gives positions in this array.
+		 */
+		int members[];
+		int memberX[];
+		int memberY[];
+		int nbMembers;
+
+		/**
+		 * The grid covers the x from gridFrom included to gridTo excluded, and should cover from to to
+		 */
+		private SpatialGrid grid;
+		private int gridFrom;
+		private int gridTo;
+		private int from;
+		private int to;
+
+		/**
+		 * False once partitioned, until the grid is rebuilt
+		 */
+		private boolean indexed;
+
+		private Region() {
+			this.owned = new int[0];
+			this.members = new int[0];
+			this.memberX = new int[0];
+			this.memberY = new int[0];
+			this.grid = null;
+			this.indexed = true;
+		}
+
+		private void setExtent(int from, int to) {
+			this.from = from;
+			this.to = to;
+			this.indexed = false;
+		}
+
+		/**
+		 * Puts the members in the grid if they changed since it was last built. Only to be called by the worker of the strip.
+		 * @return the grid, giving positions in {@link #members}
+		 */
+		SpatialGrid index() {
+			if (!indexed) {
+				if (grid == null || gridFrom != from || gridTo != to) {
+					grid = new SpatialGrid(from, to - from, mapHeight, cellSize);
+					gridFrom = from;
+					gridTo = to;
+				}
+				grid.rebuild(memberX, memberY, nbMembers);
+				indexed = true;
+			}
+			return grid;
+		}
+
+		private void ensureCapacity(int count) {
+			if (owned.length < count) {
+				int capacity = Math.max(count, owned.length * 2);
+				owned = new int[capacity];
+				members = new int[capacity];
+				memberX = new int[capacity];
+				memberY = new int[capacity];
+			}
+		}
+
+		private void addMember(int i, int x, int y) {
+			members[nbMembers] = i;
+			memberX[nbMembers] = x;
+			memberY[nbMembers] = y;
+			nbMembers++;
+		}
+	}
+}
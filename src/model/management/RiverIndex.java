@@ -0,0 +1,135 @@
+package model.management;
+
+import java.awt.geom.Line2D;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Segments of all rivers of a world, baked once in a bucket grid.
+ * Each cell knows the segments whose bounding box overlaps it, so that crossing and detection checks
+ * only look at the few segments around a position.
+ * Segments are numbered river by river, node by node, which is the order callbacks are made in.
+ */
+final class RiverIndex {
+	private final int cellSize;
+	private final int columns;
+	private final int rows;
+
+	private final int x1[];
+	private final int y1[];
+	private final int x2[];
+	private final int y2[];
+	private final Coordinate start[];
+	private final Coordinate end[];
+
+	/**
+	 * cellStart[c] to cellStart[c+1] (excluded) is the range, in {@link #cellSegments}, of the segments in cell c
+	 */
+	private final int cellStart[];
+	private final int cellSegments[];
+
+	RiverIndex(List<River> rivers, int width, int height, int cellSize) {
+		this.cellSize = cellSize;
+		this.columns = Math.max(1, (width + cellSize - 1) / cellSize);
+		this.rows = Math.max(1, (height + cellSize - 1) / cellSize);
+
+		int nbSegments = 0;
+		for (River r : rivers) {
+			nbSegments += Math.max(0, r.getNodes().length - 1);
+		}
+		x1 = new int[nbSegments];
+		y1 = new int[nbSegments];
+		x2 = new int[nbSegments];
+		y2 = new int[nbSegments];
+		start = new Coordinate[nbSegments];
+		end = new Coordinate[nbSegments];
+		int s = 0;
+		for (River r : rivers) {
+			Coordinate nodes[] = r.getNodes();
+			for (int i = 0 ; i < nodes.length-1 ; i++) {
+				start[s] = nodes[i];
+				end[s] = nodes[i+1];
+				x1[s] = nodes[i].getX();
+				y1[s] = nodes[i].getY();
+				x2[s] = nodes[i+1].getX();
+				y2[s] = nodes[i+1].getY();
+				s++;
+			}
+		}
+
+		cellStart = new int[columns * rows + 1];
+		for (s = 0 ; s < nbSegments ; s++) {
+			for (int r = row(Math.min(y1[s], y2[s])) ; r <= row(Math.max(y1[s], y2[s])) ; r++) {
+				for (int c = column(Math.min(x1[s], x2[s])) ; c <= column(Math.max(x1[s], x2[s])) ; c++) {
+					cellStart[c + r * columns + 1]++;
+				}
+			}
+		}
+		for (int c = 1 ; c < cellStart.length ; c++) {
+			cellStart[c] += cellStart[c - 1];
+		}
+		cellSegments = new int[cellStart[cellStart.length - 1]];
+		int cursor[] = Arrays.copyOf(cellStart, cellStart.length - 1);
+		for (s = 0 ; s < nbSegments ; s++) {
+			for (int r = row(Math.min(y1[s], y2[s])) ; r <= row(Math.max(y1[s], y2[s])) ; r++) {
+				for (int c = column(Math.min(x1[s], x2[s])) ; c <= column(Math.max(x1[s], x2[s])) ; c++) {
+					cellSegments[cursor[c + r * columns]++] = s;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return true if going in a straight line from (fromX,fromY) to (toX,toY) would touch a river
+	 */
+	boolean crosses(int fromX, int fromY, int toX, int toY) {
+		for (int r = row(Math.min(fromY, toY)) ; r <= row(Math.max(fromY, toY)) ; r++) {
+			for (int c = column(Math.min(fromX, toX)) ; c <= column(Math.max(fromX, toX)) ; c++) {
+				for (int k = cellStart[c + r * columns] ; k < cellStart[c + r * columns + 1] ; k++) {
+					int s = cellSegments[k];
+					if (Line2D.linesIntersect(fromX, fromY, toX, toY, x1[s], y1[s], x2[s], y2[s])) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Fills result with the segments that may be within radius of (x,y), sorted and without duplicates.
+	 * The caller still has to check the actual distance.
+	 */
+	void query(int x, int y, int radius, SpatialGrid.Hits result) {
+		result.clear();
+		int minColumn = column(x - radius);
+		int maxColumn = column(x + radius);
+		for (int r = row(y - radius) ; r <= row(y + radius) ; r++) {
+			result.addAll(cellSegments, cellStart[minColumn + r * columns], cellStart[maxColumn + r * columns + 1]);
+		}
+		result.sortDistinct();
+	}
+
+	/**
+	 * Distance between the segment and a point, see {@link Simulator#dist(double, double, double, double, double, double)}
+	 */
+	double distance(int segment, int x, int y) {
+		return Simulator.dist(x1[segment], y1[segment], x2[segment], y2[segment], x, y);
+	}
+
+	Coordinate getStart(int segment) {
+		return start[segment];
+	}
+
+	Coordinate getEnd(int segment) {
+		return end[segment];
+	}
+
+	private int column(int x) {
+		return Math.min(columns - 1, Math.max(0, x / cellSize));
+	}
+
+	private int row(int y) {
+		return Math.min(rows - 1, Math.max(0, y / cellSize));
+	}
+}
@@ -3,11 +3,24 @@
  */
 package model.management;
 
-import java.util.HashSet;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.NoSuchElementException;
+import java.util.Map;
 import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 /** TODO gameplay ideas :
  * rivers : not crossable unless payed for the feature, all animals need water to survive (amount can be changed : think of camels). Gives bonus points if can only live in the water ? beware grass growing into/beyond water (is it a problem ?).
@@ -23,74 +36,458 @@ import java.util.Set;
  * Main class, controls interactions between most other classes.
  */
 public class Simulator {
-	private List<Animal> allAnimals;
-	private List<Grass> allGrass;
+	private EntityStore<Animal> allAnimals;
+	private EntityStore<Grass> allGrass;
 	private List<River> allRivers;
 	private List<Animal> newborns;
-	private Set<Animal> animalsToRemove;
+	private List<Animal> animalsToRemove;
+
+	/**
+	 * The same animals as {@link #allAnimals}, by species
+	 */
+	private final SpeciesRegistry species;
+
+	/**
+	 * What is given to those outside the simulator
+	 */
+	private Collection<Animal> animalsView;
+	private Collection<Grass> grassView;
+
+	/**
+	 * Where animals were at the start of the tick, to only look for animals close to each other
+	 */
+	private SpatialGrid animalGrid;
+	private Animal animalsSnapshot[];
+	private int animalsX[];
+	private int animalsY[];
+
+	private GrassIndex grassIndex;
+
+	private RiverIndex riverIndex;
+
+	/**
+	 * Query results of the simulator thread. Each thread running parallel tasks has its own.
+	 */
+	private NearbyEntities nearby;
+	private ThreadLocal<NearbyEntities> batchNearby;
+
+	/**
+	 * See {@link WorldConfiguration#isPooledPerception()}
+	 */
+	private final boolean pooledPerception;
+
+	/**
+	 * See {@link WorldConfiguration#isParallel()}
+	 */
+	private final boolean parallel;
+
+	/**
+	 * Strips of the map run by their own worker if the world has regions (see {@link WorldConfiguration#getRegions()}), null otherwise
+	 */
+	private final RegionDecomposition regions;
+
+	/**
+	 * Animals around each animal, kept over several ticks if the world has a neighbour skin (see {@link WorldConfiguration#getNeighbourSkin()}), null otherwise
+	 */
+	private final NeighbourLists neighbourLists;
+
+	/**
+	 * Core state of the animals if the world is data-oriented (see {@link WorldConfiguration#isDataOriented()}), null otherwise
+	 */
+	private final AnimalTable animalTable;
 
 	public final static int MAX_DISTANCE_TO_EAT_PREY = 30;
 
+	/**
+	 * Side of a cell of {@link #animalGrid}. Around half the default detection distance, so that a query only looks at a few cells.
+	 */
+	final static int GRID_CELL_SIZE = 64;
+
+	private final static TickPhase PHASES[] = TickPhase.values();
+
+	private final static EntityStore.Slots<Animal> ANIMAL_SLOTS = new EntityStore.Slots<Animal>() {
+		@Override
+		public int getSlot(Animal a) {
+			return a.getSlot();
+		}
+
+		@Override
+		public void setSlot(Animal a, int slot) {
+			a.setSlot(slot);
+		}
+	};
+
+	private final static EntityStore.Slots<Grass> GRASS_SLOTS = new EntityStore.Slots<Grass>() {
+		@Override
+		public int getSlot(Grass g) {
+			return g.getSlot();
+		}
+
+		@Override
+		public void setSlot(Grass g, int slot) {
+			g.setSlot(slot);
+		}
+	};
+
+	/**
+	 * Under this number of animals, a parallel phase isn't split further
+	 */
+	final static int PARALLEL_BATCH_SIZE = 256;
+
 	public final int MAP_WIDTH;
 	public final int MAP_HEIGHT;
 
 	private int ticksElapsed;
 
+	/**
+	 * Where every random stream of the world comes from, see {@link #newRandom(long, int)}
+	 */
+	private final long seed;
+
+	/**
+	 * Stream of the map, given to {@link #newRandom(long, int)} instead of the id of an animal
+	 */
+	static final long MAP_STREAM = -1;
+
+	/**
+	 * Odd constant (the one of {@link SplittableRandom}) spacing the seeds mixed into streams
+	 */
+	private static final long STREAM_GAMMA = 0x9E3779B97F4A7C15L;
+
+	/**
+	 * Id of the next animal to be created, see {@link Animal#getId()}
+	 */
+	private long nextAnimalId;
+
+	/**
+	 * Where events are recorded, if anywhere
+	 */
+	private EventJournal journal;
+
+	/**
+	 * Measures of the last ticks if the world is monitored (see {@link WorldConfiguration#isMonitored()}), null otherwise
+	 */
+	private final TickMonitor monitor;
+	private ObjectName monitorName;
+	private final long phaseNanos[];
+	private final LongAdder detectionCallbacks;
+
+	private static final AtomicInteger nbMonitoredSimulators = new AtomicInteger();
+
+	/**
+	 * Time spent in the code of animals if measured (see {@link WorldConfiguration#isAiAccounting()}), null otherwise
+	 */
+	private final AiAccounting accounting;
+	private final long aiBudgetNanos;
+
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+	/**
+	 * True if the code of animals is timed with the CPU time of its thread, see {@link #aiClock()}
+	 */
+	private final boolean aiCpuTime;
+
+	/**
+	 * Creates a world as big as the screen. See {@link #Simulator(Class, boolean, WorldConfiguration)} to run without a display.
+	 */
 	public Simulator(Class<?> race, boolean predators) throws IllegalArgumentException {
+		this(race, predators, WorldConfiguration.fitToScreen());
+	}
+
+	/**
+	 * Creates a world with {@link WorldConfiguration#getStartingAnimals()} animals of the given race,
+	 * and {@link WorldConfiguration#getStartingPredators()} {@link model.Predator} if predators is true
+	 */
+	public Simulator(Class<?> race, boolean predators, WorldConfiguration config) throws IllegalArgumentException {
+		this(MapGenerator.startingPopulations(race, predators, config), config);
+	}
+
+	/**
+	 * Creates a world with any number of species
+	 * @param startingPopulations how many animals of each class the world starts with, classes being created in that order
+	 */
+	public Simulator(Map<Class<?>, Integer> startingPopulations, WorldConfiguration config) throws IllegalArgumentException {
+		this(config);
+		for (Map.Entry<Class<?>, Integer> entry : startingPopulations.entrySet()) {
+			if (!Animal.class.isAssignableFrom(entry.getKey())) {
+				throw new IllegalArgumentException(entry.getKey().getName() + " doesn't extend Animal");
+			}
+			if (entry.getValue() < 0) {
+				throw new IllegalArgumentException("Negative population for " + entry.getKey().getName());
+			}
+		}
+
+		MapGenerator map = new MapGenerator(config);
+		map.generateWorld(allAnimals, allGrass, allRivers, startingPopulations, this);
+		indexWorld();
+	}
+
+	/**
+	 * Creates an empty world, to be filled with {@link #restoreWorld(List, List, List, int)}
+	 */
+	Simulator(WorldConfiguration config) throws IllegalArgumentException {
+		if (config == null) {
+			throw new IllegalArgumentException("Configuration parameter must not be null");
+		}
 		ticksElapsed = 0;
-		allAnimals = new LinkedList<Animal>();
-		newborns = new LinkedList<Animal>();
+		nextAnimalId = 0;
+		journal = null;
+		seed = config.getSeed();
+		parallel = config.isParallel();
+		pooledPerception = config.isPooledPerception();
+		animalTable = config.isDataOriented() ? new AnimalTable() : null;
+		monitor = config.isMonitored() ? new TickMonitor() : null;
+		phaseNanos = new long[PHASES.length];
+		detectionCallbacks = new LongAdder();
+		aiBudgetNanos = config.getAiBudgetNanos();
+		// Reading the CPU time is a system call, which can halve the ticks per second : only paid for budgets to be fair
+		aiCpuTime = aiBudgetNanos > 0 && THREADS.isCurrentThreadCpuTimeSupported() && THREADS.isThreadCpuTimeEnabled();
+		accounting = config.isAiAccounting() || aiBudgetNanos > 0 ? new AiAccounting(aiCpuTime) : null;
+		allAnimals = new EntityStore<Animal>(Animal.class, ANIMAL_SLOTS);
+		species = new SpeciesRegistry();
+		newborns = new ArrayList<Animal>();
 		allRivers = new LinkedList<River>();
-		animalsToRemove = new HashSet<Animal>();
-		allGrass = new LinkedList<Grass>();
+		animalsToRemove = new ArrayList<Animal>();
+		allGrass = new EntityStore<Grass>(Grass.class, GRASS_SLOTS);
+		animalsView = Collections.unmodifiableCollection(allAnimals);
+		grassView = Collections.unmodifiableCollection(allGrass);
+
+		MAP_HEIGHT = config.getMapHeight();
+		MAP_WIDTH = config.getMapWidth();
+
+		animalGrid = new SpatialGrid(MAP_WIDTH, MAP_HEIGHT, GRID_CELL_SIZE);
+		regions = config.getRegions() > 1 ? new RegionDecomposition(config.getRegions(), MAP_WIDTH, MAP_HEIGHT, GRID_CELL_SIZE) : null;
+		neighbourLists = config.getNeighbourSkin() > 0 ? new NeighbourLists(config.getNeighbourSkin()) : null;
+		animalsSnapshot = new Animal[0];
+		animalsX = new int[0];
+		animalsY = new int[0];
+		nearby = new NearbyEntities(pooledPerception, accounting != null);
+		batchNearby = new ThreadLocal<NearbyEntities>() {
+			@Override
+			protected NearbyEntities initialValue() {
+				return new NearbyEntities(pooledPerception, accounting != null);
+			}
+		};
+	}
+
+	/**
+	 * Puts the animals, grass and rivers of the world in their indexes, once they are all there
+	 */
+	private void indexWorld() {
+		for (Animal a : allAnimals) {
+			species.add(a);
+		}
 
-		MapGenerator map = new MapGenerator();
-		MAP_HEIGHT = map.MAP_HEIGHT;
-		MAP_WIDTH = map.MAP_WIDTH;
+		grassIndex = new GrassIndex(MAP_WIDTH, MAP_HEIGHT, GRID_CELL_SIZE);
+		for (Grass g : allGrass) {
+			grassIndex.add(g);
+		}
 
-		map.generateWorld(allAnimals, allGrass, allRivers, race, predators, this);
+		riverIndex = new RiverIndex(allRivers, MAP_WIDTH, MAP_HEIGHT, GRID_CELL_SIZE);
 	}
 
-	public List<Animal> getAllAnimals() {
-		return allAnimals;
+	/**
+	 * Fills a world created with {@link #Simulator(WorldConfiguration)}, see {@link WorldCheckpoint}
+	 */
+	void restoreWorld(List<Animal> animals, List<Grass> grass, List<River> rivers, int ticksElapsed, long nextAnimalId) {
+		allAnimals.addAll(animals);
+		allGrass.addAll(grass);
+		allRivers.addAll(rivers);
+		indexWorld();
+		this.ticksElapsed = ticksElapsed;
+		this.nextAnimalId = nextAnimalId;
+	}
+
+	/**
+	 * @return a read-only view of the animals in the world, in the order they joined it
+	 */
+	public Collection<Animal> getAllAnimals() {
+		return animalsView;
+	}
+
+	/**
+	 * @return every species (exact class of animal) that was ever in the world, in the order they joined it
+	 */
+	public Set<Class<?>> getSpecies() {
+		return species.getSpecies();
+	}
+
+	/**
+	 * @return a read-only view of the animals of that exact class in the world, dead or alive, in the order they joined it
+	 */
+	public Collection<Animal> getAnimals(Class<?> animalClass) {
+		return species.getAnimals(animalClass);
+	}
+
+	/**
+	 * @return the number of living animals of that exact class
+	 */
+	public int getPopulation(Class<?> animalClass) {
+		return species.getPopulation(animalClass);
 	}
 
 	public void nextTick() {
-		callDetectionMethods();
+		if (monitor != null) {
+			nextMonitoredTick();
+		} else {
+			for (TickPhase phase : PHASES) {
+				runPhase(phase);
+			}
+		}
+	}
 
-		for (Animal a : allAnimals) {
-			a.behave();
+	/**
+	 * Same as {@link #nextTick()}, timing every phase for Flight Recorder and {@link #monitor}
+	 */
+	private void nextMonitoredTick() {
+		final int tick = ticksElapsed;
+		TickEvent tickEvent = new TickEvent();
+		tickEvent.begin();
+		for (TickPhase phase : PHASES) {
+			TickPhaseEvent event = new TickPhaseEvent();
+			event.begin();
+			long start = System.nanoTime();
+			runPhase(phase);
+			phaseNanos[phase.ordinal()] = System.nanoTime() - start;
+			event.end();
+			if (event.shouldCommit()) {
+				event.phase = phase.name();
+				event.tick = tick;
+				event.animals = allAnimals.size();
+				event.commit();
+			}
 		}
-		for (Animal a : allAnimals) {
-			a.move(MAP_WIDTH, MAP_HEIGHT, allRivers);
-			a.gettingHungry();
+		long callbacks = detectionCallbacks.sumThenReset();
+		tickEvent.end();
+		if (tickEvent.shouldCommit()) {
+			tickEvent.tick = tick;
+			tickEvent.population = allAnimals.size();
+			tickEvent.grass = allGrass.size();
+			tickEvent.detectionCallbacks = callbacks;
+			tickEvent.commit();
 		}
+		monitor.endTick(phaseNanos, callbacks, System.nanoTime(), ticksElapsed, allAnimals.size(), allGrass.size());
+	}
 
-		makeAnimalsAttack();
+	/**
+	 * Shows the measures of this monitored world through the platform MBean server, under model.management:type=Simulator,id=N.
+	 * Does nothing if the world isn't monitored (see {@link WorldConfiguration#isMonitored()}) or is already registered.
+	 */
+	public synchronized void registerMonitor() {
+		if (monitor != null && monitorName == null) {
+			try {
+				ObjectName name = new ObjectName("model.management:type=Simulator,id=" + nbMonitoredSimulators.incrementAndGet());
+				ManagementFactory.getPlatformMBeanServer().registerMBean(monitor, name);
+				monitorName = name;
+			} catch (JMException e) {
+				throw new IllegalStateException("Couldn't register the monitor of the simulator", e);
+			}
+		}
+	}
+
+	/**
+	 * Removes what {@link #registerMonitor()} registered, so that the simulator can be garbage collected
+	 */
+	public synchronized void unregisterMonitor() {
+		if (monitorName != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(monitorName);
+			} catch (JMException e) {
+				throw new IllegalStateException("Couldn't unregister the monitor of the simulator", e);
+			}
+			monitorName = null;
+		}
+	}
 
-		makeAnimalsEat();
+	/**
+	 * @return the time spent in the code of animals, or null if it isn't measured (see {@link WorldConfiguration#isAiAccounting()})
+	 */
+	public AiAccounting getAiAccounting() {
+		return accounting;
+	}
 
-		makeAnimalsMate();
+	/**
+	 * @return the measures of the last ticks, or null if the world isn't monitored (see {@link WorldConfiguration#isMonitored()})
+	 */
+	public SimulatorMonitorMXBean getMonitor() {
+		return monitor;
+	}
 
-		for (Animal a : allAnimals) {
-			a.nextTick();
-		}
-		for (Grass g : allGrass) {
-			g.nextTick();
+	/**
+	 * Runs one step of {@link #nextTick()}. Steps are only meant to be run in the order of {@link TickPhase}
+	 */
+	void runPhase(TickPhase phase) {
+		switch (phase) {
+		case DETECTION:
+			callDetectionMethods();
+			break;
+		case BEHAVE:
+			forEachAnimal(TickPhase.BEHAVE, snapshotAnimals());
+			break;
+		case MOVE:
+			if (animalTable != null) {
+				animalTable.moveAndGetHungry(allAnimals.getSlotCount(), MAP_WIDTH, MAP_HEIGHT, riverIndex);
+			} else {
+				for (Animal a : allAnimals) {
+					a.move(MAP_WIDTH, MAP_HEIGHT, riverIndex);
+					a.gettingHungry();
+				}
+			}
+			break;
+		case ATTACK:
+			makeAnimalsAttack();
+			break;
+		case EAT:
+			makeAnimalsEat();
+			break;
+		case MATE:
+			makeAnimalsMate();
+			break;
+		case AGING:
+			if (animalTable != null) {
+				animalTable.nextTick(allAnimals.getSlotCount());
+			} else {
+				for (Animal a : allAnimals) {
+					a.nextTick();
+				}
+			}
+			break;
+		case GRASS_GROWTH:
+			for (Grass g : allGrass) {
+				g.nextTick();
+			}
+			break;
+		case WORLD_UPDATE:
+			updateWorld();
+			break;
 		}
+	}
 
-		allAnimals.addAll(newborns);
+	/**
+	 * Newborns join the world, rotten animals leave it, then the slots of everything that left during the tick are reclaimed
+	 */
+	private void updateWorld() {
+		for (Animal baby : newborns) {
+			allAnimals.add(baby);
+			species.add(baby);
+		}
 		newborns.clear();
 
 		for (Animal a : animalsToRemove) {
-			if (allAnimals.contains(a)) {
-				allAnimals.remove(a);
-			} else {
-				throw new NoSuchElementException();
+			// Rotten carcasses may have been eaten already
+			if (allAnimals.removeEntity(a)) {
+				species.remove(a);
+				recordEvent(EventJournal.EventType.ROT, a.getId(), -1, -1, a.getPosX(), a.getPosY(), a.getAge());
 			}
 		}
 		animalsToRemove.clear();
 
+		allAnimals.compact();
+		species.compact();
+		allGrass.compact();
+
+		if (journal != null) {
+			journal.endTick();
+		}
 		ticksElapsed++;
 	}
 
@@ -102,92 +499,262 @@ public class Simulator {
 		animalsToRemove.add(animal);
 	}
 
+	/**
+	 * Only called during the phases that don't run in parallel
+	 */
+	void animalDied(Animal animal) {
+		species.died(animal);
+	}
+
 	private void callDetectionMethods() {
+		final int nbAnimals = snapshotAnimals();
+		NeighbourLists.Update update = neighbourLists != null ? neighbourLists.startTick(animalsSnapshot, animalsX, animalsY, nbAnimals) : NeighbourLists.Update.REBUILT;
+		// Reused lists don't need the grids, and regions then keep the same animals
+		if (update != NeighbourLists.Update.REUSED) {
+			if (regions != null) {
+				regions.partition(animalsSnapshot, animalsX, animalsY, nbAnimals, neighbourLists != null ? neighbourLists.getSkin() : 0);
+			}
+			if (regions == null || update == NeighbourLists.Update.PATCHED) {
+				animalGrid.rebuild(animalsX, animalsY, nbAnimals);
+			}
+		}
+		if (update == NeighbourLists.Update.PATCHED) {
+			neighbourLists.addNewcomers(animalGrid, nearby.animals);
+		}
+		forEachAnimal(TickPhase.DETECTION, nbAnimals);
+	}
+
+	/**
+	 * Copies {@link #allAnimals} and their positions in {@link #animalsSnapshot}, {@link #animalsX} and {@link #animalsY}
+	 * @return the number of animals
+	 */
+	private int snapshotAnimals() {
+		final int nbAnimals = allAnimals.size();
+		if (animalsSnapshot.length < nbAnimals) {
+			animalsSnapshot = new Animal[Math.max(nbAnimals, animalsSnapshot.length * 2)];
+			animalsX = new int[animalsSnapshot.length];
+			animalsY = new int[animalsSnapshot.length];
+		}
+		int i = 0;
 		for (Animal a : allAnimals) {
-			for (Grass g : allGrass) {
-				double distanceToFood = euclidianDistance(a.getPosX(), a.getPosY(), g.getPosX(), g.getPosY());
-				if (Math.ceil(distanceToFood) < a.getDetectionDistanceValue()) {
-					a.onGrassDetected(new DetectedGrass(g));
+			animalsSnapshot[i] = a;
+			animalsX[i] = a.getPosX();
+			animalsY[i] = a.getPosY();
+			i++;
+		}
+		return nbAnimals;
+	}
+
+	/**
+	 * Runs the part of the phase that concerns each animal of {@link #animalsSnapshot}, split among the regions of the world if it has some,
+	 * or among several threads if {@link #parallel}.
+	 * Only meant for phases in which animals don't change anything but themselves.
+	 */
+	private void forEachAnimal(TickPhase phase, int nbAnimals) {
+		if (regions != null) {
+			// Animals are in the regions they were given at the start of the tick, as nobody moves before behaving
+			ForkJoinPool.commonPool().invoke(new RegionBatch(phase, 0, regions.getRegionCount()));
+		} else if (parallel && nbAnimals > PARALLEL_BATCH_SIZE) {
+			ForkJoinPool.commonPool().invoke(new AnimalBatch(phase, 0, nbAnimals));
+		} else {
+			for (int i = 0 ; i < nbAnimals ; i++) {
+				runFor(phase, i, nearby, animalGrid, null);
+			}
+			endBatch(nearby);
+		}
+		Arrays.fill(animalsSnapshot, 0, nbAnimals, null);
+	}
+
+	/**
+	 * Adds what was counted while running a batch of animals to the counts of the simulator
+	 */
+	private void endBatch(NearbyEntities nearby) {
+		if (monitor != null && nearby.callbacks > 0) {
+			detectionCallbacks.add(nearby.callbacks);
+		}
+		nearby.callbacks = 0;
+		if (nearby.usage != null) {
+			accounting.merge(nearby.usage);
+		}
+	}
+
+	/**
+	 * @param grid where the animals that can be detected are, see {@link #callDetectionMethods(int, NearbyEntities, SpatialGrid, int[])}
+	 */
+	private void runFor(TickPhase phase, int animalIndex, NearbyEntities nearby, SpatialGrid grid, int gridToSnapshot[]) {
+		// Even for animals over their budget, whose list may be used in the next ticks
+		if (phase == TickPhase.DETECTION && neighbourLists != null) {
+			neighbourLists.build(animalIndex, grid, gridToSnapshot, nearby.animals);
+		}
+		if (accounting != null && isOverAiBudget(animalsSnapshot[animalIndex])) {
+			return;
+		}
+		if (phase == TickPhase.DETECTION) {
+			if (nearby.arena != null) {
+				nearby.arena.startTick(ticksElapsed);
+			}
+			callDetectionMethods(animalIndex, nearby, grid, gridToSnapshot);
+		} else {
+			Animal a = animalsSnapshot[animalIndex];
+			long start = accounting != null ? aiClock() : 0;
+			a.behave();
+			if (accounting != null) {
+				chargeAiTime(a, AiAccounting.Callback.BEHAVE, start, nearby);
+			}
+		}
+	}
+
+	/**
+	 * @return the CPU time of the current thread if the JVM can measure it, so that a worker being descheduled isn't charged to the animal it runs,
+	 * and {@link System#nanoTime()} otherwise
+	 */
+	private long aiClock() {
+		return aiCpuTime ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+	}
+
+	private boolean isOverAiBudget(Animal a) {
+		return aiBudgetNanos > 0 && a.getAiNanos(ticksElapsed) > aiBudgetNanos;
+	}
+
+	/**
+	 * Adds the time spent in a method of the animal since start to its species and to what it spent this tick
+	 * @return true if the animal just went over its budget, its next calls of the tick then being skipped
+	 */
+	private boolean chargeAiTime(Animal a, AiAccounting.Callback callback, long start, NearbyEntities nearby) {
+		long nanos = aiClock() - start;
+		nearby.usage.add(a.getClass(), callback, nanos);
+		long spent = a.chargeAiTime(ticksElapsed, nanos);
+		if (aiBudgetNanos > 0 && spent > aiBudgetNanos) {
+			nearby.usage.overrun(a.getClass());
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Calls the onFooDetected methods of the animal, for every grass, part of river and animal close enough, in this order.
+	 * Each kind of entity is given in the order of the simulator lists.
+	 * Only the entities in the grid cells around the animal, or in its neighbour list if the world has some, are looked at.
+	 * @param grid where animals are, by their index in {@link #animalsSnapshot} or, for the grid of a region, by their index in gridToSnapshot
+	 */
+	private void callDetectionMethods(int animalIndex, NearbyEntities nearby, SpatialGrid grid, int gridToSnapshot[]) {
+		final Animal a = animalsSnapshot[animalIndex];
+		final int x = animalsX[animalIndex];
+		final int y = animalsY[animalIndex];
+		final int detectionDistance = a.getDetectionDistanceValue();
+		// Only timed if accounting
+		long start;
+
+		grassIndex.query(x, y, detectionDistance, nearby.grass);
+		for (int k = 0 ; k < nearby.grass.size() ; k++) {
+			Grass g = nearby.grass.get(k);
+			if (isDetectable(x, y, g.getPosX(), g.getPosY(), detectionDistance)) {
+				nearby.callbacks++;
+				start = accounting != null ? aiClock() : 0;
+				a.onGrassDetected(nearby.arena != null ? nearby.arena.snapshot(g) : new DetectedGrass(g));
+				if (accounting != null && chargeAiTime(a, AiAccounting.Callback.GRASS_DETECTED, start, nearby)) {
+					return;
 				}
 			}
 		}
-		for (Animal a : allAnimals) {
-			for (River r : allRivers) {
-				Coordinate nodes[] = r.getNodes();
-				for (int i = 0 ; i < nodes.length-1 ; i++) {
-					Coordinate node1 = nodes[i];
-					Coordinate node2 = nodes[i+1];
-					if (dist(node1.getX(), node1.getY(), node2.getX(), node2.getY(), a.getPosX(), a.getPosY()) <= a.getDetectionDistanceValue()) {
-						a.onRiverDetected(node1, node2);
-					}
+
+		riverIndex.query(x, y, detectionDistance, nearby.riverSegments);
+		for (int k = 0 ; k < nearby.riverSegments.size() ; k++) {
+			int segment = nearby.riverSegments.get(k);
+			if (riverIndex.distance(segment, x, y) <= detectionDistance) {
+				nearby.callbacks++;
+				start = accounting != null ? aiClock() : 0;
+				a.onRiverDetected(riverIndex.getStart(segment), riverIndex.getEnd(segment));
+				if (accounting != null && chargeAiTime(a, AiAccounting.Callback.RIVER_DETECTED, start, nearby)) {
+					return;
 				}
 			}
 		}
-		for (Animal a1 : allAnimals) {
-			for (Animal a2 : allAnimals) {
-				double distance = euclidianDistance(a1.getPosX(), a1.getPosY(), a2.getPosX(), a2.getPosY());
-				if (!a1.equals(a2) && Math.ceil(distance) < a1.getDetectionDistanceValue()) {
-					a1.onAnimalDetected(new DetectedAnimal(a2));
+
+		final int list[];
+		final int listSize;
+		if (neighbourLists != null) {
+			list = neighbourLists.getList(animalIndex);
+			listSize = neighbourLists.getSize(animalIndex);
+		} else {
+			grid.query(x, y, detectionDistance, nearby.animals);
+			list = null;
+			listSize = nearby.animals.size();
+		}
+		for (int k = 0 ; k < listSize ; k++) {
+			// Lists and regions keep the order of the snapshot, so animals are detected in the same order either way
+			int j = list != null ? list[k] : gridToSnapshot != null ? gridToSnapshot[nearby.animals.get(k)] : nearby.animals.get(k);
+			if (j != animalIndex && isDetectable(x, y, animalsX[j], animalsY[j], detectionDistance)) {
+				nearby.callbacks++;
+				start = accounting != null ? aiClock() : 0;
+				a.onAnimalDetected(nearby.arena != null ? nearby.arena.snapshot(animalsSnapshot[j]) : new DetectedAnimal(animalsSnapshot[j]));
+				if (accounting != null && chargeAiTime(a, AiAccounting.Callback.ANIMAL_DETECTED, start, nearby)) {
+					return;
 				}
 			}
 		}
 	}
 
+	/**
+	 * Each animal, in the order of {@link #allAnimals}, attacks the animal it chose if it's still in the world
+	 */
 	private void makeAnimalsAttack() {
-		for (Animal a1 : allAnimals) {
-			for (Animal a2 : allAnimals) {
-				if (a1.getAnimalToAttackThisTick() != null && a1.getAnimalToAttackThisTick().equals(a2)) {
-					a1.attack(a2);
-				}
+		for (Animal a : allAnimals) {
+			Animal target = a.getAnimalToAttackThisTick();
+			if (target != null && target.isInWorld()) {
+				a.attack(target);
 			}
 		}
 	}
 
-
+	/**
+	 * Each animal, in the order of {@link #allAnimals}, mates with the animal it chose if it's still in the world
+	 */
 	private void makeAnimalsMate() {
-		for (Animal a1 : allAnimals) {
-			for (Animal a2 : allAnimals) {
-				if (a1.getAnimalToMateWithThisTick() != null && a1.getAnimalToMateWithThisTick().equals(a2)) {
-					a1.mate(a2);
-				}
+		for (Animal a : allAnimals) {
+			Animal mate = a.getAnimalToMateWithThisTick();
+			if (mate != null && mate.isInWorld()) {
+				a.mate(mate);
 			}
 		}
 	}
 
+	/**
+	 * Animals eat, in the order of {@link #allAnimals}, what they tried to eat, in the order they tried.
+	 * Grass is shared bite by bite, so a patch can feed several animals until it's empty, then it leaves the world.
+	 * A carcass is eaten whole : only the first animal to eat it gets it, and it leaves the world.
+	 */
 	private void makeAnimalsEat() {
-		List<Animal> animalsToRemove = new LinkedList<Animal>();
-		List<Grass> grassToRemove = new LinkedList<Grass>();
 		for (Animal a : allAnimals) {
 			if (a.isAlive()) {
 				if (a.isHerbivore()) {
-					for (Grass g : allGrass) {
-						if (a.getGrassesToEatThisTick().contains(g)) {
+					for (Grass g : a.getGrassesToEatThisTick()) {
+						if (g.isInWorld()) {
 							double distanceToGrass = euclidianDistance(a.getPosX(), a.getPosY(), g.getPosX(), g.getPosY());
 							if (distanceToGrass <= g.getMaxDistanceToEat()) {
 								a.eatFrom(g);
 								if (g.getAmount() == 0) {
-									grassToRemove.add(g);
+									allGrass.removeEntity(g);
+									grassIndex.remove(g);
 								}
 							}
 						}
 					}
 				} 
 				if (a.isCarnivore()) {
-					for (Animal a2 : allAnimals) {
-						if (! a2.equals(a) && a.getAnimalsToEatThisTick().contains(a2)) {
-							double distanceToPrey = euclidianDistance(a.getPosX(), a.getPosY(), a2.getPosX(), a2.getPosY());
-							if (distanceToPrey <= MAX_DISTANCE_TO_EAT_PREY && a2.isDead()) {
-								a.eatFrom(a2);
-								animalsToRemove.add(a2);
+					for (Animal prey : a.getAnimalsToEatThisTick()) {
+						if (prey != a && prey.isInWorld() && prey.isDead()) {
+							double distanceToPrey = euclidianDistance(a.getPosX(), a.getPosY(), prey.getPosX(), prey.getPosY());
+							if (distanceToPrey <= MAX_DISTANCE_TO_EAT_PREY) {
+								a.eatFrom(prey);
+								allAnimals.removeEntity(prey);
+								species.remove(prey);
 							}
 						}
 					}
 				}
 			}
 		}
-
-		allAnimals.removeAll(animalsToRemove);
-		allGrass.removeAll(grassToRemove);
 	}
 
 	public static final double euclidianDistance(int x1, int y1, int x2, int y2) {
@@ -198,6 +765,19 @@ public class Simulator {
 				);
 	}
 	
+	/**
+	 * Same as Math.ceil({@link #euclidianDistance(int, int, int, int)}) < detectionDistance, without the square root
+	 */
+	static final boolean isDetectable(int x1, int y1, int x2, int y2, int detectionDistance) {
+		if (detectionDistance <= 0) {
+			return false;
+		}
+		long dx = x1 - x2;
+		long dy = y1 - y2;
+		long maxDistance = detectionDistance - 1;
+		return dx*dx + dy*dy <= maxDistance*maxDistance;
+	}
+
 	/**
 	 * Returns the distance between a segment line 1-2 and a point 3
 	 */
@@ -221,15 +801,197 @@ public class Simulator {
 	    return Math.sqrt(dx*dx + dy*dy);
 	}
 
+	AnimalTable getAnimalTable() {
+		return animalTable;
+	}
+
+	/**
+	 * Replaces the grid of animals by one with cells of the given size. A cell as big as the map makes every animal look at every other one,
+	 * as detection did before the grid : only meant for benchmarks.
+	 */
+	void setAnimalGridCellSize(int cellSize) {
+		animalGrid = new SpatialGrid(MAP_WIDTH, MAP_HEIGHT, cellSize);
+	}
+
+	/**
+	 * @return the number of regions, 0 if the world isn't split
+	 */
+	int getRegionCount() {
+		return regions != null ? regions.getRegionCount() : 0;
+	}
+
+	/**
+	 * @return the skin of the neighbour lists, 0 if the world has none
+	 */
+	int getNeighbourSkin() {
+		return neighbourLists != null ? neighbourLists.getSkin() : 0;
+	}
+
+	boolean isParallel() {
+		return parallel;
+	}
+
+	boolean isPooledPerception() {
+		return pooledPerception;
+	}
+
+	/**
+	 * @return where the random streams of the world come from, see {@link WorldConfiguration#getSeed()}
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	long nextAnimalId() {
+		return nextAnimalId++;
+	}
+
+	long getNextAnimalId() {
+		return nextAnimalId;
+	}
+
+	/**
+	 * Starts recording what happens in the world in journal, or stops recording if null.
+	 * The journal is still to be closed by the caller once done with it.
+	 */
+	public void setJournal(EventJournal journal) {
+		if (this.journal != null) {
+			this.journal.endTick();
+		}
+		this.journal = journal;
+	}
+
+	public EventJournal getJournal() {
+		return journal;
+	}
+
+	/**
+	 * See {@link EventJournal}. Only called from the phases that don't run in parallel.
+	 */
+	void recordEvent(EventJournal.EventType type, long subject, long other, long third, int x, int y, int value) {
+		if (journal != null) {
+			journal.record(ticksElapsed, type, subject, other, third, x, y, value);
+		}
+	}
+
+	/**
+	 * Streams only depend on the seed of the world, the animal and the tick : a world restored from a {@link WorldCheckpoint}
+	 * draws the same numbers as the saved one without saving any random state, and animals can draw from their own stream in any order.
+	 * @param streamId id of the animal whose stream it is, or {@link #MAP_STREAM}
+	 * @return a new random stream, independent from the others
+	 */
+	SplittableRandom newRandom(long streamId, int tick) {
+		// Each nextLong() mixes its seed well enough for close ids and ticks to give unrelated streams
+		long streamSeed = new SplittableRandom(seed + streamId * STREAM_GAMMA).nextLong();
+		return new SplittableRandom(new SplittableRandom(streamSeed + tick * STREAM_GAMMA).nextLong());
+	}
+
 	public int getTicksElapsed() {
 		return ticksElapsed;
 	}
 
-	public List<Grass> getAllFoodSources() {
-		return allGrass;
+	/**
+	 * @return a read-only view of the grass in the world
+	 */
+	public Collection<Grass> getAllFoodSources() {
+		return grassView;
 	}
 
 	public List<River> getAllRivers() {
 		return allRivers;
 	}
+
+	/**
+	 * Results of spatial queries, reused from one animal to the next
+	 */
+	private static final class NearbyEntities {
+		private final List<Grass> grass = new ArrayList<Grass>();
+		private final SpatialGrid.Hits riverSegments = new SpatialGrid.Hits();
+		private final SpatialGrid.Hits animals = new SpatialGrid.Hits();
+
+		/**
+		 * Number of onFooDetected calls made, until added to {@link Simulator#detectionCallbacks}
+		 */
+		private long callbacks;
+
+		/**
+		 * Where snapshots come from in a world with pooled perception, null otherwise
+		 */
+		private final PerceptionArena arena;
+
+		/**
+		 * Time spent in the code of animals, until merged in {@link Simulator#accounting}. Null if not measured.
+		 */
+		private final AiAccounting.Usage usage;
+
+		NearbyEntities(boolean pooledPerception, boolean accounting) {
+			this.arena = pooledPerception ? new PerceptionArena() : null;
+			this.usage = accounting ? new AiAccounting.Usage() : null;
+		}
+	}
+
+	/**
+	 * Part of {@link Simulator#animalsSnapshot} to run a phase for, split in halves until small enough
+	 */
+	private final class AnimalBatch extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final TickPhase phase;
+		private final int from;
+		private final int to;
+
+		AnimalBatch(TickPhase phase, int from, int to) {
+			this.phase = phase;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= PARALLEL_BATCH_SIZE) {
+				NearbyEntities nearby = batchNearby.get();
+				for (int i = from ; i < to ; i++) {
+					runFor(phase, i, nearby, animalGrid, null);
+				}
+				endBatch(nearby);
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new AnimalBatch(phase, from, middle), new AnimalBatch(phase, middle, to));
+			}
+		}
+	}
+
+	/**
+	 * The part of a phase that concerns the animals owned by some regions, one task per region
+	 */
+	private final class RegionBatch extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final TickPhase phase;
+		private final int from;
+		private final int to;
+
+		RegionBatch(TickPhase phase, int from, int to) {
+			this.phase = phase;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				RegionDecomposition.Region region = regions.getRegion(from);
+				// Only detection looks at the grid
+				SpatialGrid grid = phase == TickPhase.DETECTION ? region.index() : null;
+				NearbyEntities nearby = batchNearby.get();
+				for (int k = 0 ; k < region.nbOwned ; k++) {
+					runFor(phase, region.owned[k], nearby, grid, region.members);
+				}
+				endBatch(nearby);
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new RegionBatch(phase, from, middle), new RegionBatch(phase, middle, to));
+			}
+		}
+	}
 }
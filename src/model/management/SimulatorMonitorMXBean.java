@@ -0,0 +1,35 @@
+package model.management;
+
+import java.util.Map;
+
+/**
+ * What a monitored simulator (see {@link WorldConfiguration#isMonitored()}) shows through JMX.
+ * Rates, means and percentiles are computed over the last {@link TickMonitor#WINDOW} ticks.
+ * Phase durations are given by {@link TickPhase} name, in microseconds.
+ */
+public interface SimulatorMonitorMXBean {
+	int getTicksElapsed();
+
+	double getTicksPerSecond();
+
+	int getPopulation();
+
+	int getGrassCount();
+
+	long getDetectionCallbacksLastTick();
+
+	double getDetectionCallbacksPerTick();
+
+	Map<String, Double> getPhaseMeanMicros();
+
+	Map<String, Double> getPhaseP50Micros();
+
+	Map<String, Double> getPhaseP99Micros();
+
+	Map<String, Double> getPhaseMaxMicros();
+
+	/**
+	 * Forgets the ticks measured so far
+	 */
+	void reset();
+}
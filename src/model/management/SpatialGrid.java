@@ -0,0 +1,146 @@
+package model.management;
+
+import java.util.Arrays;
+
+/**
+ * Uniform bucket grid over the map, or a vertical strip of it, used to find which points are close to a given position without scanning all of them.
+ * Points are identified by their index in the arrays given to {@link #rebuild(int[], int[], int)}, and are expected to move :
+ * the grid is simply rebuilt (in linear time) whenever positions changed.
+ * Positions outside of the map are put in the border cells, so queries stay correct for them too.
+ */
+public final class SpatialGrid {
+	private final int originX;
+	private final int cellSize;
+	private final int columns;
+	private final int rows;
+
+	/**
+	 * cellStart[c] to cellStart[c+1] (excluded) is the range, in {@link #entries}, of the points in cell c
+	 */
+	private final int cellStart[];
+	private int entries[];
+	private int cellOfPoint[];
+
+	public SpatialGrid(int width, int height, int cellSize) {
+		this(0, width, height, cellSize);
+	}
+
+	/**
+	 * Grid over the x from originX included to originX + width excluded
+	 */
+	public SpatialGrid(int originX, int width, int height, int cellSize) {
+		if (cellSize <= 0) {
+			throw new IllegalArgumentException("Cell size must be positive");
+		}
+		this.originX = originX;
+		this.cellSize = cellSize;
+		this.columns = Math.max(1, (width + cellSize - 1) / cellSize);
+		this.rows = Math.max(1, (height + cellSize - 1) / cellSize);
+		this.cellStart = new int[columns * rows + 1];
+		this.entries = new int[0];
+		this.cellOfPoint = new int[0];
+	}
+
+	/**
+	 * Forgets previous points and puts the first count points of xs/ys in the grid.
+	 * Inside a cell, points are kept sorted by index.
+	 */
+	public void rebuild(int xs[], int ys[], int count) {
+		if (entries.length < count) {
+			entries = new int[Math.max(count, entries.length * 2)];
+			cellOfPoint = new int[entries.length];
+		}
+		Arrays.fill(cellStart, 0);
+		for (int i = 0 ; i < count ; i++) {
+			int cell = column(xs[i]) + row(ys[i]) * columns;
+			cellOfPoint[i] = cell;
+			cellStart[cell + 1]++;
+		}
+		for (int c = 1 ; c < cellStart.length ; c++) {
+			cellStart[c] += cellStart[c - 1];
+		}
+		// cellStart[c] is used as a cursor while filling, which shifts it to the start of cell c+1...
+		for (int i = 0 ; i < count ; i++) {
+			entries[cellStart[cellOfPoint[i]]++] = i;
+		}
+		// ...so shift everything back
+		for (int c = cellStart.length - 1 ; c > 0 ; c--) {
+			cellStart[c] = cellStart[c - 1];
+		}
+		cellStart[0] = 0;
+	}
+
+	/**
+	 * Adds to result the index of every point in the cells overlapping the square of given radius around (x,y), sorted by index.
+	 * This is a superset of the points within radius : the caller still has to check the actual distance.
+	 */
+	public void query(int x, int y, int radius, Hits result) {
+		result.clear();
+		int minColumn = column(x - radius);
+		int maxColumn = column(x + radius);
+		int minRow = row(y - radius);
+		int maxRow = row(y + radius);
+		for (int r = minRow ; r <= maxRow ; r++) {
+			int from = cellStart[minColumn + r * columns];
+			int to = cellStart[maxColumn + r * columns + 1];
+			// Cells of a row are contiguous in entries
+			result.addAll(entries, from, to);
+		}
+		result.sort();
+	}
+
+	private int column(int x) {
+		return Math.min(columns - 1, Math.max(0, (x - originX) / cellSize));
+	}
+
+	private int row(int y) {
+		return Math.min(rows - 1, Math.max(0, y / cellSize));
+	}
+
+	/**
+	 * Reusable list of point indexes, filled by {@link SpatialGrid#query(int, int, int, Hits)}
+	 */
+	public static final class Hits {
+		private int indexes[] = new int[64];
+		private int size;
+
+		public int size() {
+			return size;
+		}
+
+		public int get(int i) {
+			return indexes[i];
+		}
+
+		void clear() {
+			size = 0;
+		}
+
+		void addAll(int source[], int from, int to) {
+			int n = to - from;
+			if (size + n > indexes.length) {
+				indexes = Arrays.copyOf(indexes, Math.max(size + n, indexes.length * 2));
+			}
+			System.arraycopy(source, from, indexes, size, n);
+			size += n;
+		}
+
+		void sort() {
+			Arrays.sort(indexes, 0, size);
+		}
+
+		/**
+		 * Sorts and removes duplicates
+		 */
+		void sortDistinct() {
+			sort();
+			int distinct = 0;
+			for (int i = 0 ; i < size ; i++) {
+				if (distinct == 0 || indexes[i] != indexes[distinct - 1]) {
+					indexes[distinct++] = indexes[i];
+				}
+			}
+			size = distinct;
+		}
+	}
+}
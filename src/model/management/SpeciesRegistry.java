@@ -0,0 +1,127 @@
+package model.management;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The animals of a world sorted by species (their exact class), each species having its own {@link EntityStore} and count of living animals,
+ * so that looking at a species never goes through the whole world.
+ * Kept up to date by {@link Simulator} whenever animals join, die or leave the world.
+ */
+final class SpeciesRegistry {
+	private static final EntityStore.Slots<Animal> SPECIES_SLOTS = new EntityStore.Slots<Animal>() {
+		@Override
+		public int getSlot(Animal a) {
+			return a.getSpeciesSlot();
+		}
+
+		@Override
+		public void setSlot(Animal a, int slot) {
+			a.setSpeciesSlot(slot);
+		}
+	};
+
+	private final Map<Class<?>, Species> species;
+	private final Set<Class<?>> speciesView;
+
+	/**
+	 * Cache of the last species looked up to update it, animals of a same species often following each other.
+	 * Only used by the updates, which are made by the simulator thread : readers may be the AIs of several workers.
+	 */
+	private Class<?> lastClass;
+	private Species lastSpecies;
+
+	SpeciesRegistry() {
+		this.species = new LinkedHashMap<Class<?>, Species>();
+		this.speciesView = Collections.unmodifiableSet(species.keySet());
+	}
+
+	void add(Animal a) {
+		Species s = speciesOf(a.getClass(), true);
+		s.animals.add(a);
+		if (a.isAlive()) {
+			s.alive++;
+		}
+	}
+
+	void remove(Animal a) {
+		Species s = speciesOf(a.getClass(), false);
+		if (s != null && s.animals.removeEntity(a) && a.isAlive()) {
+			s.alive--;
+		}
+	}
+
+	/**
+	 * To be called when an animal dies, and before it leaves the world
+	 */
+	void died(Animal a) {
+		Species s = speciesOf(a.getClass(), false);
+		if (s != null && s.animals.contains(a)) {
+			s.alive--;
+		}
+	}
+
+	/**
+	 * Reclaims the slots of the animals that left, see {@link EntityStore#compact()}
+	 */
+	void compact() {
+		for (Species s : species.values()) {
+			s.animals.compact();
+		}
+	}
+
+	/**
+	 * @return every species that was ever in the world, in the order they joined it
+	 */
+	Set<Class<?>> getSpecies() {
+		return speciesView;
+	}
+
+	/**
+	 * @return a read-only view of the animals of that species, dead or alive, in the order they joined the world
+	 */
+	Collection<Animal> getAnimals(Class<?> animalClass) {
+		Species s = species.get(animalClass);
+		return s == null ? Collections.<Animal>emptyList() : s.view;
+	}
+
+	/**
+	 * @return the number of living animals of that species
+	 */
+	int getPopulation(Class<?> animalClass) {
+		Species s = species.get(animalClass);
+		return s == null ? 0 : s.alive;
+	}
+
+	private Species speciesOf(Class<?> animalClass, boolean create) {
+		if (animalClass == lastClass) {
+			return lastSpecies;
+		}
+		Species s = species.get(animalClass);
+		if (s == null) {
+			if (!create) {
+				return null;
+			}
+			s = new Species();
+			species.put(animalClass, s);
+		}
+		lastClass = animalClass;
+		lastSpecies = s;
+		return s;
+	}
+
+	private static final class Species {
+		private final EntityStore<Animal> animals;
+		private final Collection<Animal> view;
+		private int alive;
+
+		private Species() {
+			this.animals = new EntityStore<Animal>(Animal.class, SPECIES_SLOTS);
+			this.view = Collections.unmodifiableCollection(animals);
+			this.alive = 0;
+		}
+	}
+}
@@ -0,0 +1,30 @@
+package model.management;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event of a whole tick of a monitored simulator, see {@link WorldConfiguration#isMonitored()}
+ */
+@Name("model.management.Tick")
+@Label("Tick")
+@Category("Animal Simulator")
+@Description("One call to Simulator.nextTick")
+@StackTrace(false)
+final class TickEvent extends Event {
+	@Label("Tick")
+	int tick;
+
+	@Label("Population")
+	int population;
+
+	@Label("Grass")
+	int grass;
+
+	@Label("Detection Callbacks")
+	long detectionCallbacks;
+}
@@ -0,0 +1,144 @@
+package model.management;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rolling measures of the last ticks of a simulator, filled by the simulator thread at the end of every tick and read through JMX
+ */
+final class TickMonitor implements SimulatorMonitorMXBean {
+	static final int WINDOW = 1000;
+
+	private static final TickPhase PHASES[] = TickPhase.values();
+
+	/**
+	 * phaseNanos[phase][i] is how long the phase took in the i-th tick of the ring
+	 */
+	private final long phaseNanos[][];
+	private final long tickEnds[];
+	private final long detectionCallbacks[];
+
+	/**
+	 * Where the next tick goes in the ring, and how many ticks are in it
+	 */
+	private int next;
+	private int count;
+
+	private int ticksElapsed;
+	private int population;
+	private int grassCount;
+
+	TickMonitor() {
+		this.phaseNanos = new long[PHASES.length][WINDOW];
+		this.tickEnds = new long[WINDOW];
+		this.detectionCallbacks = new long[WINDOW];
+		reset();
+	}
+
+	synchronized void endTick(long phaseNanos[], long detectionCallbacks, long tickEnd, int ticksElapsed, int population, int grassCount) {
+		for (int p = 0 ; p < PHASES.length ; p++) {
+			this.phaseNanos[p][next] = phaseNanos[p];
+		}
+		this.detectionCallbacks[next] = detectionCallbacks;
+		this.tickEnds[next] = tickEnd;
+		next = (next + 1) % WINDOW;
+		count = Math.min(count + 1, WINDOW);
+		this.ticksElapsed = ticksElapsed;
+		this.population = population;
+		this.grassCount = grassCount;
+	}
+
+	@Override
+	public synchronized void reset() {
+		next = 0;
+		count = 0;
+	}
+
+	@Override
+	public synchronized int getTicksElapsed() {
+		return ticksElapsed;
+	}
+
+	@Override
+	public synchronized double getTicksPerSecond() {
+		if (count < 2) {
+			return 0;
+		}
+		long newest = tickEnds[(next - 1 + WINDOW) % WINDOW];
+		long oldest = tickEnds[(next - count + WINDOW) % WINDOW];
+		return (count - 1) * 1e9 / Math.max(1, newest - oldest);
+	}
+
+	@Override
+	public synchronized int getPopulation() {
+		return population;
+	}
+
+	@Override
+	public synchronized int getGrassCount() {
+		return grassCount;
+	}
+
+	@Override
+	public synchronized long getDetectionCallbacksLastTick() {
+		return count == 0 ? 0 : detectionCallbacks[(next - 1 + WINDOW) % WINDOW];
+	}
+
+	@Override
+	public synchronized double getDetectionCallbacksPerTick() {
+		long sum = 0;
+		for (int i = 0 ; i < count ; i++) {
+			sum += detectionCallbacks[i];
+		}
+		return count == 0 ? 0 : (double) sum / count;
+	}
+
+	@Override
+	public Map<String, Double> getPhaseMeanMicros() {
+		Map<String, Double> res = new LinkedHashMap<String, Double>();
+		for (TickPhase phase : PHASES) {
+			long sorted[] = sortedDurations(phase);
+			long sum = 0;
+			for (long d : sorted) {
+				sum += d;
+			}
+			res.put(phase.name(), sorted.length == 0 ? 0 : sum / 1000. / sorted.length);
+		}
+		return res;
+	}
+
+	@Override
+	public Map<String, Double> getPhaseP50Micros() {
+		return percentile(0.5);
+	}
+
+	@Override
+	public Map<String, Double> getPhaseP99Micros() {
+		return percentile(0.99);
+	}
+
+	@Override
+	public Map<String, Double> getPhaseMaxMicros() {
+		return percentile(1);
+	}
+
+	/**
+	 * Nearest-rank percentile of the duration of every phase
+	 */
+	private Map<String, Double> percentile(double p) {
+		Map<String, Double> res = new LinkedHashMap<String, Double>();
+		for (TickPhase phase : PHASES) {
+			long sorted[] = sortedDurations(phase);
+			int rank = (int) Math.ceil(p * sorted.length);
+			res.put(phase.name(), sorted.length == 0 ? 0 : sorted[Math.max(0, rank - 1)] / 1000.);
+		}
+		return res;
+	}
+
+	private synchronized long[] sortedDurations(TickPhase phase) {
+		long sorted[] = Arrays.copyOf(phaseNanos[phase.ordinal()], count);
+		Arrays.sort(sorted);
+		return sorted;
+	}
+}
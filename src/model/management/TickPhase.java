@@ -0,0 +1,21 @@
+package model.management;
+
+/**
+ * The steps of {@link Simulator#nextTick()}, in the order they are run
+ */
+public enum TickPhase {
+	/** Animals are told what they can see : grass, rivers and other animals */
+	DETECTION,
+	/** Animals decide what to do */
+	BEHAVE,
+	/** Animals move and get hungry */
+	MOVE,
+	ATTACK,
+	EAT,
+	MATE,
+	/** Animals get older, dead ones rot */
+	AGING,
+	GRASS_GROWTH,
+	/** Newborns join the world, rotten animals leave it */
+	WORLD_UPDATE
+}
@@ -0,0 +1,27 @@
+package model.management;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event of one phase of a tick of a monitored simulator, see {@link WorldConfiguration#isMonitored()}
+ */
+@Name("model.management.TickPhase")
+@Label("Tick Phase")
+@Category("Animal Simulator")
+@Description("One step of Simulator.nextTick")
+@StackTrace(false)
+final class TickPhaseEvent extends Event {
+	@Label("Phase")
+	String phase;
+
+	@Label("Tick")
+	int tick;
+
+	@Label("Animals")
+	int animals;
+}
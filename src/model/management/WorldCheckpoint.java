@@ -0,0 +1,359 @@
+package model.management;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Saves a whole world in a compact binary file, and creates a world back from it, to resume a long run after a restart.
+ * Only meant to be used between two ticks.
+ * The private memory of AIs is saved through {@link Animal#writeMemory(java.io.DataOutput)} and {@link Animal#readMemory(java.io.DataInput)}.
+ * Random streams only depend on the seed, the ids of the animals and the tick (see {@link Animal#getRandom()}), which are saved :
+ * a restored world draws the numbers the saved one would have drawn, so a run resumed from a checkpoint is the same as if it had never stopped.
+ */
+public final class WorldCheckpoint {
+	private static final int MAGIC = 0x414E5349; // "ANSI"
+	private static final int VERSION = 1;
+
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * Upper bound of what is written for an animal, its memory excluded
+	 */
+	private static final int MAX_ANIMAL_BYTES = 256;
+
+	private WorldCheckpoint() {
+	}
+
+	/**
+	 * Writes the world in file, replacing it only once the whole checkpoint is written
+	 */
+	public static void save(Simulator simulator, Path file) throws IOException {
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			Output out = new Output(channel);
+
+			// Class names and images are written once, animals refer to them by index
+			Map<String, Integer> stringIndexes = new HashMap<String, Integer>();
+			List<String> strings = new ArrayList<String>();
+			for (Animal a : simulator.getAllAnimals()) {
+				indexOf(a.getClass().getName(), stringIndexes, strings);
+				indexOf(a.getTilePath(), stringIndexes, strings);
+				indexOf(a.getDeadTilePath(), stringIndexes, strings);
+			}
+
+			out.ensure(64);
+			out.buffer.putInt(MAGIC);
+			out.buffer.putInt(VERSION);
+			out.buffer.putInt(simulator.MAP_WIDTH);
+			out.buffer.putInt(simulator.MAP_HEIGHT);
+			out.buffer.putLong(simulator.getSeed());
+			out.buffer.put((byte) ((simulator.isParallel() ? 1 : 0) | (simulator.getAnimalTable() != null ? 2 : 0) | (simulator.isPooledPerception() ? 4 : 0) | (simulator.getMonitor() != null ? 8 : 0)));
+			out.buffer.putInt(simulator.getTicksElapsed());
+			out.buffer.putLong(simulator.getNextAnimalId());
+			out.buffer.putInt(simulator.getRegionCount());
+			out.buffer.putInt(simulator.getNeighbourSkin());
+
+			out.buffer.putInt(strings.size());
+			for (String s : strings) {
+				byte bytes[] = s.getBytes(StandardCharsets.UTF_8);
+				out.ensure(4 + bytes.length);
+				out.buffer.putInt(bytes.length);
+				out.buffer.put(bytes);
+			}
+
+			out.ensure(4);
+			out.buffer.putInt(simulator.getAllRivers().size());
+			for (River r : simulator.getAllRivers()) {
+				Coordinate nodes[] = r.getNodes();
+				out.ensure(4 + nodes.length * 8);
+				out.buffer.putInt(nodes.length);
+				for (Coordinate c : nodes) {
+					out.buffer.putInt(c.getX());
+					out.buffer.putInt(c.getY());
+				}
+			}
+
+			out.ensure(4);
+			out.buffer.putInt(simulator.getAllFoodSources().size());
+			for (Grass g : simulator.getAllFoodSources()) {
+				out.ensure(16);
+				out.buffer.putInt(g.getPosX());
+				out.buffer.putInt(g.getPosY());
+				out.buffer.putInt(g.getAmount());
+				out.buffer.putInt(g.getAge());
+			}
+
+			Memory memory = new Memory();
+			DataOutputStream memoryOut = new DataOutputStream(memory);
+			out.ensure(4);
+			out.buffer.putInt(simulator.getAllAnimals().size());
+			for (Animal a : simulator.getAllAnimals()) {
+				memory.reset();
+				a.writeMemory(memoryOut);
+				memoryOut.flush();
+
+				out.ensure(MAX_ANIMAL_BYTES + memory.size());
+				out.buffer.putInt(stringIndexes.get(a.getClass().getName()));
+				out.buffer.putInt(indexOf(a.getTilePath(), stringIndexes, strings));
+				out.buffer.putInt(indexOf(a.getDeadTilePath(), stringIndexes, strings));
+				out.buffer.putLong(a.getId());
+				a.writeState(out.buffer);
+				// Slots are the indexes in the world, as it is compacted at the end of every tick
+				out.buffer.putInt(slotOf(a.getAnimalToAttackThisTick()));
+				out.buffer.putInt(slotOf(a.getAnimalToMateWithThisTick()));
+				out.buffer.putInt(memory.size());
+				memory.putInto(out.buffer);
+			}
+			out.flush();
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Creates the world saved in file, with the same execution options (parallel, data-oriented, pooled perception, monitoring) as when it was saved
+	 */
+	public static Simulator load(Path file) throws IOException {
+		return load(file, null);
+	}
+
+	/**
+	 * Creates the world saved in file, run with the execution options of options (parallel, regions, neighbour lists, data-oriented, pooled perception,
+	 * monitoring, AI accounting) instead of those it was saved with. Size, population and seed still come from the checkpoint.
+	 * @param options null to keep the saved execution options
+	 */
+	public static Simulator load(Path file, WorldConfiguration options) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer in = readFully(channel);
+			if (in.remaining() < 8 || in.getInt() != MAGIC) {
+				throw new IOException(file + " isn't a world checkpoint");
+			}
+			int version = in.getInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported checkpoint version " + version);
+			}
+
+			WorldConfiguration config = new WorldConfiguration(in.getInt(), in.getInt());
+			long seed = in.getLong();
+			byte flags = in.get();
+			int ticksElapsed = in.getInt();
+			long nextAnimalId = in.getLong();
+			int regions = in.getInt();
+			int neighbourSkin = in.getInt();
+			config.setParallel((flags & 1) != 0);
+			config.setRegions(regions);
+			config.setNeighbourSkin(neighbourSkin);
+			config.setDataOriented((flags & 2) != 0);
+			config.setPooledPerception((flags & 4) != 0);
+			config.setMonitored((flags & 8) != 0);
+			if (options != null) {
+				config.setParallel(options.isParallel());
+				config.setRegions(options.getRegions());
+				config.setNeighbourSkin(options.getNeighbourSkin());
+				config.setDataOriented(options.isDataOriented());
+				config.setPooledPerception(options.isPooledPerception());
+				config.setMonitored(options.isMonitored());
+				config.setAiAccounting(options.isAiAccounting());
+				config.setAiBudgetNanos(options.getAiBudgetNanos());
+			}
+			config.setSeed(seed);
+			Simulator simulator = new Simulator(config);
+
+			String strings[] = new String[in.getInt()];
+			for (int i = 0 ; i < strings.length ; i++) {
+				byte bytes[] = new byte[in.getInt()];
+				in.get(bytes);
+				strings[i] = new String(bytes, StandardCharsets.UTF_8);
+			}
+
+			List<River> rivers = new ArrayList<River>();
+			for (int i = in.getInt() ; i > 0 ; i--) {
+				Coordinate nodes[] = new Coordinate[in.getInt()];
+				for (int j = 0 ; j < nodes.length ; j++) {
+					nodes[j] = new Coordinate(in.getInt(), in.getInt());
+				}
+				rivers.add(new River(nodes));
+			}
+
+			List<Grass> grass = new ArrayList<Grass>();
+			for (int i = in.getInt() ; i > 0 ; i--) {
+				grass.add(new Grass(in.getInt(), in.getInt(), in.getInt(), in.getInt()));
+			}
+
+			Map<String, Constructor<?>> constructors = new HashMap<String, Constructor<?>>();
+			MemoryInput memory = new MemoryInput(in);
+			DataInputStream memoryIn = new DataInputStream(memory);
+			int nbAnimals = in.getInt();
+			List<Animal> animals = new ArrayList<Animal>(nbAnimals);
+			int targets[] = new int[nbAnimals * 2];
+			for (int i = 0 ; i < nbAnimals ; i++) {
+				Animal a = newAnimal(strings[in.getInt()], constructors, simulator);
+				String tilePath = stringAt(strings, in.getInt());
+				String deadTilePath = stringAt(strings, in.getInt());
+				a.restoreImages(tilePath, deadTilePath);
+				a.restoreId(in.getLong());
+				a.readState(in);
+				targets[i * 2] = in.getInt();
+				targets[i * 2 + 1] = in.getInt();
+
+				int memoryEnd = in.getInt();
+				memoryEnd += in.position();
+				memory.limit = memoryEnd;
+				a.readMemory(memoryIn);
+				// Whatever the AI didn't read is skipped
+				in.position(memoryEnd);
+				animals.add(a);
+			}
+			for (int i = 0 ; i < nbAnimals ; i++) {
+				animals.get(i).restoreTargets(animalAt(animals, targets[i * 2]), animalAt(animals, targets[i * 2 + 1]));
+			}
+
+			simulator.restoreWorld(animals, grass, rivers, ticksElapsed, nextAnimalId);
+			return simulator;
+		} catch (RuntimeException e) {
+			// Mostly buffer underflows of truncated files
+			throw new IOException(file + " is corrupted", e);
+		}
+	}
+
+	private static Animal newAnimal(String className, Map<String, Constructor<?>> constructors, Simulator simulator) throws IOException {
+		try {
+			Constructor<?> constructor = constructors.get(className);
+			if (constructor == null) {
+				constructor = Class.forName(className).getConstructor(int.class, int.class, Simulator.class);
+				constructors.put(className, constructor);
+			}
+			return (Animal) constructor.newInstance(0, 0, simulator);
+		} catch (ClassNotFoundException | NoSuchMethodException | SecurityException | InstantiationException | IllegalAccessException | InvocationTargetException e) {
+			throw new IOException("Couldn't create an animal of class " + className, e);
+		}
+	}
+
+	private static int indexOf(String s, Map<String, Integer> indexes, List<String> strings) {
+		if (s == null) {
+			return -1;
+		}
+		Integer index = indexes.get(s);
+		if (index == null) {
+			index = strings.size();
+			indexes.put(s, index);
+			strings.add(s);
+		}
+		return index;
+	}
+
+	private static String stringAt(String strings[], int index) {
+		return index < 0 ? null : strings[index];
+	}
+
+	private static int slotOf(Animal a) {
+		return a != null && a.isInWorld() ? a.getSlot() : -1;
+	}
+
+	private static Animal animalAt(List<Animal> animals, int slot) {
+		return slot < 0 ? null : animals.get(slot);
+	}
+
+	/**
+	 * Reads the whole file in memory. A mapped buffer would keep the file open until it is garbage collected,
+	 * which prevents saving over it on Windows, ex : --resume world.ck --checkpoint world.ck
+	 */
+	private static ByteBuffer readFully(FileChannel channel) throws IOException {
+		long size = channel.size();
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("Checkpoint too big : " + size + " bytes");
+		}
+		ByteBuffer buffer = ByteBuffer.allocate((int) size);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) {
+				throw new IOException("Checkpoint truncated while being read");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Buffer written to the channel whenever it's full
+	 */
+	private static final class Output {
+		private final FileChannel channel;
+		private ByteBuffer buffer;
+
+		Output(FileChannel channel) {
+			this.channel = channel;
+			this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		}
+
+		/**
+		 * Makes sure that at least n bytes can be put in {@link #buffer}
+		 */
+		void ensure(int n) throws IOException {
+			if (buffer.remaining() < n) {
+				flush();
+				if (buffer.capacity() < n) {
+					buffer = ByteBuffer.allocateDirect(n);
+				}
+			}
+		}
+
+		void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+	}
+
+	/**
+	 * Memory of one animal at a time, copied in the checkpoint without going through a new array
+	 */
+	private static final class Memory extends ByteArrayOutputStream {
+		void putInto(ByteBuffer out) {
+			out.put(buf, 0, count);
+		}
+	}
+
+	/**
+	 * Memory of the animal being restored, read straight from the checkpoint and stopping at its end
+	 */
+	private static final class MemoryInput extends InputStream {
+		private final ByteBuffer in;
+		private int limit;
+
+		MemoryInput(ByteBuffer in) {
+			this.in = in;
+		}
+
+		@Override
+		public int read() {
+			return in.position() < limit ? in.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte b[], int off, int len) {
+			int n = Math.min(len, limit - in.position());
+			if (n <= 0) {
+				return len == 0 ? 0 : -1;
+			}
+			in.get(b, off, n);
+			return n;
+		}
+	}
+}
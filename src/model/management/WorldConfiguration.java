@@ -0,0 +1,243 @@
+package model.management;
+
+import java.awt.DisplayMode;
+import java.awt.GraphicsEnvironment;
+import java.util.Random;
+
+/**
+ * Size and starting population of a world, given to {@link Simulator} and {@link MapGenerator}.
+ * Starting counts default to values proportional to the size of the map, and can be changed afterwards.
+ */
+public class WorldConfiguration {
+	private final int mapWidth;
+	private final int mapHeight;
+
+	private int startingVegetation;
+	private int startingAnimals;
+	private int startingPredators;
+
+	private boolean rivers;
+
+	private boolean parallel;
+
+	private int regions;
+
+	private int neighbourSkin;
+
+	private boolean dataOriented;
+
+	private boolean pooledPerception;
+
+	private boolean monitored;
+
+	private boolean aiAccounting;
+	private long aiBudgetNanos;
+
+	/**
+	 * Where every random number of the world comes from : the same seed gives the same map,
+	 * and the same run as long as animals only use {@link Animal#getRandom()}
+	 */
+	private long seed;
+
+	public WorldConfiguration(int mapWidth, int mapHeight) throws IllegalArgumentException {
+		if (mapWidth <= 0 || mapHeight <= 0) {
+			throw new IllegalArgumentException("Map size must be positive, not " + mapWidth + "x" + mapHeight);
+		}
+		this.mapWidth = mapWidth;
+		this.mapHeight = mapHeight;
+		this.startingVegetation = (mapWidth + mapHeight) / 100;
+		this.startingAnimals = startingVegetation;
+		this.startingPredators = startingAnimals / 2;
+		this.rivers = true;
+		this.parallel = false;
+		this.regions = 0;
+		this.neighbourSkin = 0;
+		this.dataOriented = false;
+		this.pooledPerception = false;
+		this.monitored = false;
+		this.aiAccounting = false;
+		this.aiBudgetNanos = 0;
+		this.seed = new Random().nextLong();
+	}
+
+	/**
+	 * A world as big as the screen, minus some room for the window and buttons.
+	 * Only usable when there is a display.
+	 */
+	public static WorldConfiguration fitToScreen() {
+		DisplayMode display = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDisplayMode();
+		return new WorldConfiguration(display.getWidth() - 20, display.getHeight() - 150);
+	}
+
+	public int getMapWidth() {
+		return mapWidth;
+	}
+
+	public int getMapHeight() {
+		return mapHeight;
+	}
+
+	public int getStartingVegetation() {
+		return startingVegetation;
+	}
+
+	public void setStartingVegetation(int startingVegetation) {
+		this.startingVegetation = requirePositiveOrZero(startingVegetation, "number of grass patches");
+	}
+
+	/**
+	 * How many animals of the user race there are when the world is created
+	 */
+	public int getStartingAnimals() {
+		return startingAnimals;
+	}
+
+	public void setStartingAnimals(int startingAnimals) {
+		this.startingAnimals = requirePositiveOrZero(startingAnimals, "number of animals");
+	}
+
+	/**
+	 * How many {@link model.Predator} there are when the world is created, if the simulator is asked for predators
+	 */
+	public int getStartingPredators() {
+		return startingPredators;
+	}
+
+	public void setStartingPredators(int startingPredators) {
+		this.startingPredators = requirePositiveOrZero(startingPredators, "number of predators");
+	}
+
+	public boolean hasRivers() {
+		return rivers;
+	}
+
+	public void setRivers(boolean rivers) {
+		this.rivers = rivers;
+	}
+
+	/**
+	 * If true, the detection and behave phases of a tick are split among all cores.
+	 * Animals of a parallel world must not rely on other animals' state in their onFooDetected and {@link Animal#behave()} methods,
+	 * which is already the case when they only use what they are given.
+	 */
+	public boolean isParallel() {
+		return parallel;
+	}
+
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	/**
+	 * If more than 1, the map is cut in that many vertical strips, and the detection and behave phases of a tick run strip by strip, each on its own worker.
+	 * Borders follow the animals so that strips stay about as crowded. The run is the same as without regions,
+	 * with the same restrictions on animals as in a parallel world (see {@link #isParallel()}).
+	 */
+	public int getRegions() {
+		return regions;
+	}
+
+	public void setRegions(int regions) {
+		this.regions = requirePositiveOrZero(regions, "number of regions");
+	}
+
+	/**
+	 * If positive, each animal keeps the list of the animals within its detection distance plus that skin, and only looks at them during the next ticks,
+	 * until an animal moved more than half the skin or the population changed. Animals detect exactly the same things as without lists.
+	 * Worth it when animals move slowly compared to the skin : a larger skin means longer lists, but rebuilt less often.
+	 * 0 (the default) means no lists.
+	 */
+	public int getNeighbourSkin() {
+		return neighbourSkin;
+	}
+
+	public void setNeighbourSkin(int neighbourSkin) {
+		this.neighbourSkin = requirePositiveOrZero(neighbourSkin, "neighbour skin");
+	}
+
+	/**
+	 * If true, the core state of animals (position, direction, fullness, age, cooldowns and features) is kept by the simulator
+	 * in one array per attribute, and the phases that go through every animal are tight loops over those arrays.
+	 * Faster for large populations, and invisible from {@link Animal} subclasses.
+	 */
+	public boolean isDataOriented() {
+		return dataOriented;
+	}
+
+	public void setDataOriented(boolean dataOriented) {
+		this.dataOriented = dataOriented;
+	}
+
+	/**
+	 * If true, the {@link DetectedAnimal} and {@link DetectedGrass} given to animals are reused from one tick to the next instead of being created for every detection.
+	 * They stay valid during the whole tick they are given in. Animals that keep them longer must keep a copy instead,
+	 * see {@link DetectedAnimal#copy()} and {@link DetectedGrass#copy()}.
+	 */
+	public boolean isPooledPerception() {
+		return pooledPerception;
+	}
+
+	public void setPooledPerception(boolean pooledPerception) {
+		this.pooledPerception = pooledPerception;
+	}
+
+	/**
+	 * If true, every tick and each of its phases are timed : they are sent to Flight Recorder as events,
+	 * and shown through JMX with the population and the number of detection callbacks, see {@link SimulatorMonitorMXBean}.
+	 * Otherwise nothing is measured.
+	 */
+	public boolean isMonitored() {
+		return monitored;
+	}
+
+	public void setMonitored(boolean monitored) {
+		this.monitored = monitored;
+	}
+
+	/**
+	 * If true, the time spent in the code of animals is measured, by species and by method, see {@link Simulator#getAiAccounting()}.
+	 * Always true when there is a budget.
+	 */
+	public boolean isAiAccounting() {
+		return aiAccounting || aiBudgetNanos > 0;
+	}
+
+	public void setAiAccounting(boolean aiAccounting) {
+		this.aiAccounting = aiAccounting;
+	}
+
+	/**
+	 * How long the code of an animal ({@link Animal#behave()} and its onFooDetected methods) may run during a tick, 0 meaning forever.
+	 * This is CPU time where the JVM can measure it, wall-clock time otherwise (see {@link AiAccounting#isCpuTime()}).
+	 * Once an animal goes over it, its calls are skipped until the next tick and the overrun is counted in {@link AiAccounting}.
+	 * Budgets depend on how fast the machine is : a world with a budget isn't reproducible anymore.
+	 */
+	public long getAiBudgetNanos() {
+		return aiBudgetNanos;
+	}
+
+	public void setAiBudgetNanos(long aiBudgetNanos) {
+		if (aiBudgetNanos < 0) {
+			throw new IllegalArgumentException(aiBudgetNanos + " is not a valid budget");
+		}
+		this.aiBudgetNanos = aiBudgetNanos;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * @param what what value is, for the message of the exception
+	 */
+	private static int requirePositiveOrZero(int value, String what) {
+		if (value < 0) {
+			throw new IllegalArgumentException(value + " is not a valid " + what);
+		}
+		return value;
+	}
+}